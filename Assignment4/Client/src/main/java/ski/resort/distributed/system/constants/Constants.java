@@ -14,6 +14,7 @@ public class Constants {
 
   // Retry config
   public static final int MAX_RETRIES = 5;
+  public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
 
   // Parameters for testing
   public static final int TOTAL_POSTS = 200000;
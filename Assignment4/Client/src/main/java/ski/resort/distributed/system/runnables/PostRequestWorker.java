@@ -7,10 +7,13 @@ import ski.resort.distributed.system.models.Event;
 import ski.resort.distributed.system.models.EventLog;
 import ski.resort.distributed.system.models.PostWorkerParam;
 
+import java.util.UUID;
+
 import static ski.resort.distributed.system.constants.Constants.HTTP_CLIENT_ERROR;
 import static ski.resort.distributed.system.constants.Constants.HTTP_CREATED;
 import static ski.resort.distributed.system.constants.Constants.HTTP_OK;
 import static ski.resort.distributed.system.constants.Constants.HTTP_SERVER_ERROR;
+import static ski.resort.distributed.system.constants.Constants.IDEMPOTENCY_KEY_HEADER;
 import static ski.resort.distributed.system.constants.Constants.MAX_RETRIES;
 import static ski.resort.distributed.system.constants.UserConfig.RECORD_POSTS_IN_CSV;
 
@@ -72,6 +75,12 @@ public class PostRequestWorker implements Runnable {
     int attempt = 0;
     boolean success = false;
 
+    // One key for every attempt, so a retry of a ride the server already took is not counted twice
+    params
+        .getSkiersApi()
+        .getApiClient()
+        .addDefaultHeader(IDEMPOTENCY_KEY_HEADER, UUID.randomUUID().toString());
+
     // Retry logic encapsulated in a separate method
     while (attempt < MAX_RETRIES && !success) {
       attempt++;
@@ -6,15 +6,38 @@ import ski.resort.distributed.system.dal.DBCPDataSource;
 
 import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeoutException;
 
+/**
+ * Usage: {@code Consumer [numShards] [firstShard-lastShard]}
+ *
+ * <p>With one shard (the default), {@code NUM_THREADS} channels compete on the single ride
+ * queue. With N shards, matching the Server's {@code NUM_QUEUE_SHARDS}, each shard queue in the
+ * given range (all by default) gets its own channel. A channel hands its deliveries to the callback
+ * one at a time and in order, so every skier's rides are applied in order by one writer, while
+ * shards run in parallel on the connection's threads. Start several Consumers with disjoint ranges
+ * to spread the shards across processes; shard queues are single-active-consumer, so overlapping
+ * ranges are still safe.
+ */
 public class Consumer {
   private static final int NUM_THREADS = 55;
   private static final String QUEUE_NAME = "SkierServletPostQueue";
+  private static final Map<String, Object> SHARD_QUEUE_ARGS =
+      Map.of("x-single-active-consumer", true);
 
   public static void main(String[] args) {
+    final int numShards = args.length > 0 ? Integer.parseInt(args[0]) : 1;
+    int firstShard = 0;
+    int lastShard = numShards - 1;
+    if (args.length > 1) {
+      String[] range = args[1].split("-");
+      firstShard = Integer.parseInt(range[0]);
+      lastShard = Integer.parseInt(range[range.length - 1]);
+    }
+
     // Ensure database and table are created
     DBCPDataSource.getDataSource();
     try {
@@ -41,8 +64,14 @@ public class Consumer {
     }
 
     ExecutorService pool = Executors.newFixedThreadPool(NUM_THREADS);
-    for (int i = 0; i < NUM_THREADS; i++) {
-      pool.execute(new ConsumerRunnable(QUEUE_NAME, connection));
+    if (numShards == 1) {
+      for (int i = 0; i < NUM_THREADS; i++) {
+        pool.execute(new ConsumerRunnable(QUEUE_NAME, null, connection));
+      }
+    } else {
+      for (int shard = firstShard; shard <= lastShard; shard++) {
+        pool.execute(new ConsumerRunnable(QUEUE_NAME + "." + shard, SHARD_QUEUE_ARGS, connection));
+      }
     }
   }
 }
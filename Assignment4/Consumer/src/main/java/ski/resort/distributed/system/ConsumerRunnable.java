@@ -4,18 +4,25 @@ import com.rabbitmq.client.CancelCallback;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.DeliverCallback;
-import org.json.JSONObject;
+import ski.resort.distributed.system.codec.LiftRideMessageDecoder;
 import ski.resort.distributed.system.dal.LiftRideDao;
+import ski.resort.distributed.system.models.LiftRide;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.List;
+import java.util.Map;
 
 public class ConsumerRunnable implements Runnable {
   private final String queueName;
+  private final Map<String, Object> queueArgs;
   private final Connection connection;
 
-  ConsumerRunnable(String queueName, Connection connection) {
+  ConsumerRunnable(String queueName, Map<String, Object> queueArgs, Connection connection) {
     this.queueName = queueName;
+    this.queueArgs = queueArgs;
     this.connection = connection;
   }
 
@@ -23,17 +30,62 @@ public class ConsumerRunnable implements Runnable {
   public void run() {
     try {
       Channel channel = connection.createChannel();
-      channel.queueDeclare(queueName, false, false, false, null);
+      channel.queueDeclare(queueName, false, false, false, queueArgs);
 
       DeliverCallback deliverCallback =
           (consumerTag, delivery) -> {
-            String message = new String(delivery.getBody(), StandardCharsets.UTF_8); // Bytes
-            JSONObject jsonObject = new JSONObject(message);
+            final long deliveryTag = delivery.getEnvelope().getDeliveryTag();
 
-            // Add record to database
+            final List<LiftRide> liftRides;
+            try {
+              liftRides =
+                  LiftRideMessageDecoder.decode(delivery.getProperties(), delivery.getBody());
+            } catch (RuntimeException e) {
+              // an unknown version or a truncated record never decodes; thrown out of the callback
+              // it would close the channel and have the message redelivered to the next one
+              System.err.println("!!! Rejecting a malformed lift ride message: " + e);
+              channel.basicReject(deliveryTag, false);
+              return;
+            }
+
+            // Add record(s) to database
             LiftRideDao liftRideDao = new LiftRideDao();
-            liftRideDao.createLiftRide(jsonObject);
-            channel.basicAck(delivery.getEnvelope().getDeliveryTag(), false);
+            try {
+              if (liftRides.size() == 1) {
+                liftRideDao.createLiftRide(liftRides.get(0));
+              } else {
+                liftRideDao.createLiftRides(liftRides);
+              }
+            } catch (SQLException e) {
+              // the whole message was rolled back; requeue it if a retry can succeed, otherwise
+              // reject it rather than redeliver it forever (to the dead-letter exchange, if any)
+              if (isTransient(e)) {
+                System.err.println("Failed to insert lift rides, requeueing: " + e.getMessage());
+                channel.basicNack(deliveryTag, false, true);
+              } else {
+                System.err.println("!!! Failed to insert lift rides, rejecting them: " + e);
+                channel.basicReject(deliveryTag, false);
+              }
+              return;
+            }
+
+            // ack once the new unique skiers are counted too, so a crash redelivers rather than
+            // loses them; the channel moves on to its next delivery meanwhile
+            UniqueSkierTracker.getInstance()
+                .record(liftRides)
+                .whenComplete(
+                    (v, e) -> {
+                      try {
+                        if (e == null) {
+                          channel.basicAck(deliveryTag, false);
+                        } else {
+                          channel.basicNack(deliveryTag, false, true);
+                        }
+                      } catch (IOException ioe) {
+                        // the channel is gone; the broker redelivers the unacked message
+                        System.err.println("Failed to settle a delivery: " + ioe.getMessage());
+                      }
+                    });
           };
 
       CancelCallback cancelCallback = (consumerTag) -> {};
@@ -43,4 +95,18 @@ public class ConsumerRunnable implements Runnable {
       e.printStackTrace();
     }
   }
+
+  /**
+   * Whether a failed insert can succeed when retried: a timeout, deadlock or lost connection, as
+   * opposed to e.g. a value out of range or a missing table, which fails every time. DBCP reports
+   * an exhausted or unreachable pool without a SQLState; MySQL always sets one.
+   */
+  private static boolean isTransient(SQLException e) {
+    if (e instanceof SQLTransientException || e instanceof SQLRecoverableException) return true;
+    final String sqlState = e.getSQLState();
+    return sqlState == null
+        || sqlState.startsWith("08") // connection exception
+        || sqlState.startsWith("40") // transaction rollback: deadlock, serialization failure
+        || e.getErrorCode() == 1205; // lock wait timeout
+  }
 }
@@ -0,0 +1,56 @@
+package ski.resort.distributed.system;
+
+import org.roaringbitmap.RoaringBitmap;
+import ski.resort.distributed.system.dal.ResortSkiersCountDao;
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.models.ResortDay;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exact unique skiers: the skiers already recorded for each resort day are remembered in memory as
+ * bitmaps, and new ones are merged into the stored sets and counts of {@link ResortSkiersCountDao}.
+ */
+class SkierSetTracker extends UniqueSkierTracker<SortedMap<ResortDay, RoaringBitmap>> {
+
+  private final ResortSkiersCountDao dao = new ResortSkiersCountDao();
+  // sets as last committed; replaced, never modified, so they can be read without locking
+  private final Map<ResortDay, RoaringBitmap> recorded = new ConcurrentHashMap<>();
+  private SortedMap<ResortDay, RoaringBitmap> pending = new TreeMap<>(); // guarded by this
+
+  @Override
+  protected boolean isRecorded(LiftRide liftRide) {
+    final RoaringBitmap skiers = recorded.get(ResortDay.of(liftRide));
+    return skiers != null && skiers.contains(liftRide.getSkierID());
+  }
+
+  @Override
+  protected boolean addPending(LiftRide liftRide) {
+    pending.computeIfAbsent(ResortDay.of(liftRide), d -> new RoaringBitmap())
+        .add(liftRide.getSkierID());
+    return true;
+  }
+
+  @Override
+  protected SortedMap<ResortDay, RoaringBitmap> takePending() {
+    final SortedMap<ResortDay, RoaringBitmap> batch = pending;
+    pending = new TreeMap<>();
+    return batch;
+  }
+
+  @Override
+  protected void write(SortedMap<ResortDay, RoaringBitmap> batch) throws SQLException {
+    recorded.putAll(dao.addSkiers(batch));
+  }
+
+  @Override
+  protected void restorePending(SortedMap<ResortDay, RoaringBitmap> batch) {
+    for (Map.Entry<ResortDay, RoaringBitmap> entry : batch.entrySet()) {
+      pending.merge(entry.getKey(), entry.getValue(), (a, b) -> RoaringBitmap.or(a, b));
+    }
+  }
+}
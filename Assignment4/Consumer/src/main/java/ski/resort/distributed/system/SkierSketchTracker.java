@@ -0,0 +1,101 @@
+package ski.resort.distributed.system;
+
+import ski.resort.distributed.system.dal.ResortSkierSketchesDao;
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.models.ResortDay;
+import ski.resort.distributed.system.sketch.HyperLogLog;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Approximate unique skiers: one HyperLogLog sketch per resort day, of a fixed {@code 2^precision}
+ * bytes however many skiers it holds. Each Consumer writes its own sketches to {@link
+ * ResortSkierSketchesDao} under its {@code CONSUMER_ID}, and the Server merges the sketches of all
+ * Consumers when it reads a count. Several Consumers sharing a queue therefore count each skier
+ * once, with no coordination between them.
+ *
+ * <p>A sketch already stored under this id, from before a restart, is merged in before this
+ * Consumer first writes that day. The default id is the host name, so a restarted Consumer keeps
+ * its rows rather than adding new ones for the Server to merge. Set {@code CONSUMER_ID} to tell
+ * apart Consumers that run on the same host, which would otherwise overwrite each other's rows.
+ */
+class SkierSketchTracker extends UniqueSkierTracker<SortedMap<ResortDay, HyperLogLog>> {
+
+  private final ResortSkierSketchesDao dao = new ResortSkierSketchesDao();
+  private final String consumerID;
+  private final int precision;
+  private final Map<ResortDay, HyperLogLog> sketches = new HashMap<>(); // guarded by this
+  private Set<ResortDay> changed = new HashSet<>(); // guarded by this
+  private final Set<ResortDay> loaded = new HashSet<>(); // flusher thread only
+
+  SkierSketchTracker(int precision) {
+    final String id = System.getenv("CONSUMER_ID");
+    this.consumerID = id == null || id.isEmpty() ? hostName() : id;
+    this.precision = precision;
+  }
+
+  /** The default id: stable across restarts, so a restart reuses its rows instead of adding. */
+  private static String hostName() {
+    try {
+      return InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      throw new IllegalStateException("Cannot resolve the host name; set CONSUMER_ID", e);
+    }
+  }
+
+  @Override
+  protected boolean isRecorded(LiftRide liftRide) {
+    return false; // sketches are updated under the lock
+  }
+
+  @Override
+  protected boolean addPending(LiftRide liftRide) {
+    final ResortDay resortDay = ResortDay.of(liftRide);
+    final boolean added =
+        sketches
+            .computeIfAbsent(resortDay, d -> new HyperLogLog(precision))
+            .add(liftRide.getSkierID());
+    if (added) changed.add(resortDay);
+    return changed.contains(resortDay); // a redelivered ride waits for an unwritten sketch too
+  }
+
+  @Override
+  protected SortedMap<ResortDay, HyperLogLog> takePending() {
+    final SortedMap<ResortDay, HyperLogLog> batch = new TreeMap<>();
+    for (ResortDay resortDay : changed) batch.put(resortDay, sketches.get(resortDay).copy());
+    changed = new HashSet<>();
+    return batch;
+  }
+
+  @Override
+  protected void write(SortedMap<ResortDay, HyperLogLog> batch) throws SQLException {
+    final Map<ResortDay, HyperLogLog> stored = new HashMap<>();
+    for (ResortDay resortDay : batch.keySet()) {
+      if (loaded.contains(resortDay)) continue;
+      final HyperLogLog sketch = dao.getSketch(consumerID, precision, resortDay);
+      if (sketch != null) {
+        batch.get(resortDay).merge(sketch);
+        stored.put(resortDay, sketch);
+      }
+    }
+    dao.putSketches(consumerID, batch);
+
+    loaded.addAll(batch.keySet());
+    synchronized (this) {
+      stored.forEach((resortDay, sketch) -> sketches.get(resortDay).merge(sketch));
+    }
+  }
+
+  @Override
+  protected void restorePending(SortedMap<ResortDay, HyperLogLog> batch) {
+    changed.addAll(batch.keySet()); // the live sketches still hold every skier
+  }
+}
@@ -0,0 +1,141 @@
+package ski.resort.distributed.system;
+
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the unique skiers per resort day current as rides are consumed. Rides that add nothing new
+ * cost nothing; the others are collected by a flusher thread, which writes everything new within
+ * one interval in a single batch. Callers ack their delivery when that write completes, without
+ * blocking the channel, so a skier is never lost to a crash: the ride is redelivered and adding its
+ * skier again changes nothing. A failed write is retried with a growing delay, {@code
+ * MAX_FLUSH_ATTEMPTS} times in all; then its callers' futures fail, and they nack their deliveries
+ * so the rides come back and are recorded again.
+ *
+ * <p>{@code UNIQUE_SKIERS_MODE} picks how skiers are counted: {@code exact} (the default) keeps
+ * exact sets, see {@link SkierSetTracker}; {@code hll} keeps HyperLogLog sketches of {@code
+ * HLL_PRECISION} bits, see {@link SkierSketchTracker}. The Server must be set to the same mode.
+ *
+ * @param <B> a batch of pending changes
+ */
+public abstract class UniqueSkierTracker<B> {
+
+  public static final String MODE_EXACT = "exact";
+  public static final String MODE_HLL = "hll";
+
+  private static final String MODE = env("UNIQUE_SKIERS_MODE", MODE_EXACT);
+  private static final int HLL_PRECISION = Integer.parseInt(env("HLL_PRECISION", "12"));
+  private static final long FLUSH_INTERVAL_MILLIS = 20;
+  private static final int MAX_FLUSH_ATTEMPTS = 5; // 20 to 320 ms apart
+  private static final CompletableFuture<Void> DONE = CompletableFuture.completedFuture(null);
+
+  private static final UniqueSkierTracker<?> INSTANCE = create();
+
+  private boolean hasPending; // guarded by this
+  private int failedAttempts; // flusher thread only
+  private CompletableFuture<Void> nextFlush = new CompletableFuture<>(); // guarded by this
+
+  public static UniqueSkierTracker<?> getInstance() {
+    return INSTANCE;
+  }
+
+  private static UniqueSkierTracker<?> create() {
+    final UniqueSkierTracker<?> tracker =
+        MODE_HLL.equals(MODE) ? new SkierSketchTracker(HLL_PRECISION) : new SkierSetTracker();
+    final Thread flusher = new Thread(tracker::runFlusher, "unique-skier-flusher");
+    flusher.setDaemon(true);
+    flusher.start();
+    return tracker;
+  }
+
+  /**
+   * Returns a future that completes once the skiers of these rides are counted, or completes
+   * exceptionally once the write has failed {@code MAX_FLUSH_ATTEMPTS} times.
+   */
+  public CompletableFuture<Void> record(List<LiftRide> liftRides) {
+    CompletableFuture<Void> flushed = DONE;
+    for (LiftRide liftRide : liftRides) {
+      if (isRecorded(liftRide)) continue;
+      synchronized (this) {
+        if (addPending(liftRide)) {
+          hasPending = true;
+          flushed = nextFlush;
+          notifyAll(); // wake the flusher
+        }
+      }
+    }
+    return flushed;
+  }
+
+  /** Returns true if the ride's skier is already written; called without the lock. */
+  protected abstract boolean isRecorded(LiftRide liftRide);
+
+  /** Adds the ride's skier to the pending batch; returns false if it is already written. */
+  protected abstract boolean addPending(LiftRide liftRide);
+
+  /** Hands over the pending batch and starts a new one. */
+  protected abstract B takePending();
+
+  /** Writes a batch, on the flusher thread and without the lock. */
+  protected abstract void write(B batch) throws SQLException;
+
+  /** Puts a batch that failed to write back into the pending one. */
+  protected abstract void restorePending(B batch);
+
+  private void runFlusher() {
+    try {
+      while (true) {
+        synchronized (this) {
+          while (!hasPending) wait();
+        }
+        // let more new skiers join; back off while the writes fail
+        TimeUnit.MILLISECONDS.sleep(FLUSH_INTERVAL_MILLIS << failedAttempts);
+        final B flushing;
+        final CompletableFuture<Void> flushed;
+        synchronized (this) {
+          flushing = takePending();
+          flushed = nextFlush;
+          hasPending = false;
+          nextFlush = new CompletableFuture<>();
+        }
+        try {
+          write(flushing);
+          failedAttempts = 0;
+          flushed.complete(null);
+        } catch (SQLException | RuntimeException e) {
+          final boolean retry = ++failedAttempts < MAX_FLUSH_ATTEMPTS;
+          System.err.println(
+              "Failed to update unique skiers, "
+                  + (retry ? "retrying: " : "giving up: ")
+                  + e.getMessage());
+          synchronized (this) {
+            restorePending(flushing); // the next flush still writes them
+            hasPending = true;
+            if (retry) {
+              nextFlush.whenComplete( // its waiters wait for the retry
+                  (v, t) -> {
+                    if (t == null) flushed.complete(null);
+                    else flushed.completeExceptionally(t);
+                  });
+            }
+          }
+          if (!retry) {
+            failedAttempts = 0;
+            flushed.completeExceptionally(e); // its waiters nack
+          }
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static String env(String name, String defaultValue) {
+    final String value = System.getenv(name);
+    return value == null || value.isEmpty() ? defaultValue : value;
+  }
+}
@@ -0,0 +1,110 @@
+package ski.resort.distributed.system.codec;
+
+import com.rabbitmq.client.AMQP;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decodes queue messages into lift rides. The AMQP content type selects the format: the
+ * fixed-width binary records written by the Server's {@code LiftRideBinaryCodec}, or JSON, which is
+ * also assumed when no content type is set so older Servers keep working.
+ */
+public class LiftRideMessageDecoder {
+
+  public static final String BINARY_CONTENT_TYPE = "application/x-lift-ride";
+  /** AMQP message type the Server's batching publisher sets on a batch of lift rides. */
+  public static final String BATCH_MESSAGE_TYPE = "liftRideBatch";
+
+  private static final byte BINARY_VERSION = 1;
+  private static final int HEADER_BYTES = 4;
+  private static final int RECORD_BYTES = 24;
+  private static final int REQUEST_ID_BYTES = 16;
+  private static final byte FLAG_REQUEST_IDS = 0x01;
+
+  private LiftRideMessageDecoder() {}
+
+  public static List<LiftRide> decode(AMQP.BasicProperties props, byte[] body) {
+    if (BINARY_CONTENT_TYPE.equals(props.getContentType())) {
+      return decodeBinary(body);
+    }
+    final String message = new String(body, StandardCharsets.UTF_8);
+    if (BATCH_MESSAGE_TYPE.equals(props.getType())) {
+      final JSONArray array = new JSONArray(message);
+      final List<LiftRide> liftRides = new ArrayList<>(array.length());
+      for (int i = 0; i < array.length(); i++) {
+        liftRides.add(fromJson(array.getJSONObject(i)));
+      }
+      return liftRides;
+    }
+    return List.of(fromJson(new JSONObject(message)));
+  }
+
+  private static List<LiftRide> decodeBinary(byte[] body) {
+    final ByteBuffer buf = ByteBuffer.wrap(body); // big-endian, as written by the Server
+    final byte version = buf.get();
+    if (version != BINARY_VERSION) {
+      throw new IllegalArgumentException("Unsupported lift ride message version: " + version);
+    }
+    final boolean withRequestIDs = (buf.get() & FLAG_REQUEST_IDS) != 0;
+    final int count = Short.toUnsignedInt(buf.getShort());
+    final int stride = RECORD_BYTES + (withRequestIDs ? REQUEST_ID_BYTES : 0);
+    if (body.length != HEADER_BYTES + count * stride) {
+      throw new IllegalArgumentException("Truncated lift ride message: " + body.length + " bytes");
+    }
+
+    final List<LiftRide> liftRides = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      final int skierID = buf.getInt();
+      final int resortID = buf.getInt();
+      final int seasonID = buf.getInt();
+      final int dayID = buf.getInt();
+      final int time = buf.getInt();
+      final int liftID = buf.getInt();
+      byte[] requestID = null;
+      if (withRequestIDs) {
+        requestID = new byte[REQUEST_ID_BYTES];
+        buf.get(requestID);
+        if (isZero(requestID)) requestID = null; // padding for a ride without one
+      }
+      liftRides.add(new LiftRide(skierID, resortID, seasonID, dayID, time, liftID, requestID));
+    }
+    return liftRides;
+  }
+
+  private static LiftRide fromJson(JSONObject json) {
+    // getInt also accepts seasonID/dayID sent as strings by older Servers
+    final String requestID = json.optString("requestID", null);
+    return new LiftRide(
+        json.getInt("skierID"),
+        json.getInt("resortID"),
+        json.getInt("seasonID"),
+        json.getInt("dayID"),
+        json.getInt("time"),
+        json.getInt("liftID"),
+        requestID == null ? null : fromHex(requestID));
+  }
+
+  private static byte[] fromHex(String hex) {
+    if (hex.length() != REQUEST_ID_BYTES * 2) {
+      throw new IllegalArgumentException("Malformed request ID: " + hex);
+    }
+    final byte[] bytes = new byte[REQUEST_ID_BYTES];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = (byte) Integer.parseInt(hex, i * 2, i * 2 + 2, 16);
+    }
+    return bytes;
+  }
+
+  private static boolean isZero(byte[] bytes) {
+    for (byte b : bytes) {
+      if (b != 0) return false;
+    }
+    return true;
+  }
+}
@@ -2,6 +2,8 @@ package ski.resort.distributed.system.dal;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 
@@ -18,6 +20,14 @@ public class DBCPDataSource {
   private static final String USERNAME = "admin";
   private static final String PASSWORD = "Dev159*Q=";
 
+  // unique skiers per resort day, see ResortSkiersCountDao
+  static final String SKIER_SETS_TABLE = "resortSkierSets";
+  static final String RESORT_SKIERS_TABLE = "resortSkiersCount";
+  static final String SKIER_SKETCHES_TABLE = "resortSkierSketches";
+  // pre-aggregated verticals, see SkierVerticalDao
+  static final String SKIER_DAY_VERTICAL_TABLE = "skierDayVertical";
+  static final String SKIER_SEASON_VERTICAL_TABLE = "skierSeasonVertical";
+
   private static final String CREATE_TABLE_QUERY =
       String.format(
           "CREATE TABLE IF NOT EXISTS %s ("
@@ -28,13 +38,111 @@ public class DBCPDataSource {
               + "dayID INT NOT NULL, "
               + "time INT NOT NULL, "
               + "liftID INT NOT NULL, "
-              + "PRIMARY KEY (id)"
+              + "requestID BINARY(16) NULL, "
+              + "PRIMARY KEY (id), "
+              + "UNIQUE KEY uk_request_id (requestID)"
               + ") ENGINE=InnoDB;",
           TABLE);
 
+  // tables created before request IDs existed
+  private static final String HAS_REQUEST_ID_QUERY =
+      String.format("SHOW COLUMNS FROM %s LIKE 'requestID'", TABLE);
+  private static final String ADD_REQUEST_ID_QUERY =
+      String.format(
+          "ALTER TABLE %s ADD COLUMN requestID BINARY(16) NULL, "
+              + "ADD UNIQUE KEY uk_request_id (requestID)",
+          TABLE);
+
+  private static final String HAS_SKIER_SETS_QUERY =
+      String.format("SHOW TABLES LIKE '%s'", SKIER_SETS_TABLE);
+  private static final String DROP_RESORT_SKIERS_QUERY =
+      String.format("DROP TABLE IF EXISTS %s", RESORT_SKIERS_TABLE);
+  private static final String CREATE_RESORT_SKIERS_QUERY =
+      String.format(
+          "CREATE TABLE IF NOT EXISTS %s ("
+              + "resortID INT NOT NULL, "
+              + "seasonID INT NOT NULL, "
+              + "dayID INT NOT NULL, "
+              + "uniqueSkiers INT NOT NULL, "
+              + "PRIMARY KEY (resortID, seasonID, dayID)"
+              + ") ENGINE=InnoDB;",
+          RESORT_SKIERS_TABLE);
+
+  // built under a temporary name and renamed when complete
+  private static final String NEW_SKIER_SETS_TABLE = SKIER_SETS_TABLE + "_new";
+  private static final String DROP_NEW_SKIER_SETS_QUERY =
+      String.format("DROP TABLE IF EXISTS %s", NEW_SKIER_SETS_TABLE);
+  private static final String CREATE_NEW_SKIER_SETS_QUERY =
+      String.format(
+          "CREATE TABLE %s ("
+              + "resortID INT NOT NULL, "
+              + "seasonID INT NOT NULL, "
+              + "dayID INT NOT NULL, "
+              + "skiers MEDIUMBLOB NOT NULL, "
+              + "PRIMARY KEY (resortID, seasonID, dayID)"
+              + ") ENGINE=InnoDB;",
+          NEW_SKIER_SETS_TABLE);
+  private static final String RENAME_NEW_SKIER_SETS_QUERY =
+      String.format("RENAME TABLE %s TO %s", NEW_SKIER_SETS_TABLE, SKIER_SETS_TABLE);
+  private static final String DROP_SKIER_DAYS_QUERY = "DROP TABLE IF EXISTS skierDays";
+
+  // per-Consumer HyperLogLog sketches, see ResortSkierSketchesDao
+  private static final String CREATE_SKIER_SKETCHES_QUERY =
+      String.format(
+          "CREATE TABLE IF NOT EXISTS %s ("
+              + "resortID INT NOT NULL, "
+              + "seasonID INT NOT NULL, "
+              + "dayID INT NOT NULL, "
+              + "consumerID VARCHAR(255) NOT NULL, "
+              + "hllPrecision TINYINT NOT NULL, "
+              + "registers MEDIUMBLOB NOT NULL, "
+              + "PRIMARY KEY (resortID, seasonID, dayID, consumerID, hllPrecision)"
+              + ") ENGINE=InnoDB;",
+          SKIER_SKETCHES_TABLE);
+
+  // built under temporary names and renamed together when complete
+  private static final String NEW_SKIER_DAY_VERTICAL_TABLE = SKIER_DAY_VERTICAL_TABLE + "_new";
+  private static final String NEW_SKIER_SEASON_VERTICAL_TABLE =
+      SKIER_SEASON_VERTICAL_TABLE + "_new";
+  private static final String HAS_SKIER_VERTICALS_QUERY =
+      String.format("SHOW TABLES LIKE '%s'", SKIER_SEASON_VERTICAL_TABLE);
+  private static final String CREATE_SKIER_DAY_VERTICAL_FORMAT =
+      "CREATE TABLE IF NOT EXISTS %s ("
+          + "resortID INT NOT NULL, "
+          + "seasonID INT NOT NULL, "
+          + "dayID INT NOT NULL, "
+          + "skierID INT NOT NULL, "
+          + "rides INT NOT NULL, "
+          + "totalVertical INT NOT NULL, "
+          + "PRIMARY KEY (resortID, seasonID, dayID, skierID)"
+          + ") ENGINE=InnoDB;";
+  private static final String CREATE_SKIER_SEASON_VERTICAL_FORMAT =
+      "CREATE TABLE IF NOT EXISTS %s ("
+          + "skierID INT NOT NULL, "
+          + "resortID INT NOT NULL, "
+          + "seasonID INT NOT NULL, "
+          + "rides INT NOT NULL, "
+          + "totalVertical INT NOT NULL, "
+          + "PRIMARY KEY (skierID, resortID, seasonID)"
+          + ") ENGINE=InnoDB;";
+  private static final String DROP_TABLE_FORMAT = "DROP TABLE IF EXISTS %s";
+  private static final String RENAME_NEW_SKIER_VERTICALS_QUERY =
+      String.format(
+          "RENAME TABLE %s TO %s, %s TO %s",
+          NEW_SKIER_DAY_VERTICAL_TABLE,
+          SKIER_DAY_VERTICAL_TABLE,
+          NEW_SKIER_SEASON_VERTICAL_TABLE,
+          SKIER_SEASON_VERTICAL_TABLE);
+
   private static final String CREATE_DB_QUERY =
       String.format("CREATE DATABASE IF NOT EXISTS %s", DATABASE);
 
+  // held while the tables are checked and rebuilt, so Consumers starting together take turns
+  private static final String SCHEMA_LOCK = DATABASE + ".schema";
+  private static final int SCHEMA_LOCK_TIMEOUT_SECONDS = 3600; // a rebuild reads every ride
+  private static final String GET_LOCK_QUERY = "SELECT GET_LOCK(?, ?)";
+  private static final String RELEASE_LOCK_QUERY = "SELECT RELEASE_LOCK(?)";
+
   private static BasicDataSource dataSource;
 
   static {
@@ -45,8 +153,11 @@ public class DBCPDataSource {
     } catch (ClassNotFoundException e) {
       e.printStackTrace();
     }
+    // useAffectedRows: a duplicate ride's no-op upsert counts 0 rows, see LiftRideDao
     String url =
-        String.format("jdbc:mysql://%s:%s/%s?serverTimezone=UTC", HOST_NAME, PORT, DATABASE);
+        String.format(
+            "jdbc:mysql://%s:%s/%s?serverTimezone=UTC&useAffectedRows=true",
+            HOST_NAME, PORT, DATABASE);
     dataSource.setUrl(url);
     dataSource.setUsername(USERNAME);
     dataSource.setPassword(PASSWORD);
@@ -70,10 +181,93 @@ public class DBCPDataSource {
       try (Connection dbConn = DriverManager.getConnection(urlWithDb, USERNAME, PASSWORD);
           Statement dbStmt = dbConn.createStatement()) {
         dbStmt.executeUpdate(CREATE_TABLE_QUERY);
+        try (ResultSet columns = dbStmt.executeQuery(HAS_REQUEST_ID_QUERY)) {
+          if (!columns.next()) dbStmt.executeUpdate(ADD_REQUEST_ID_QUERY);
+        }
+        lockSchema(dbConn);
+        try {
+          createResortSkiersTables(dbConn, dbStmt);
+          dbStmt.executeUpdate(CREATE_SKIER_SKETCHES_QUERY);
+          createSkierVerticalTables(dbConn, dbStmt);
+        } finally {
+          unlockSchema(dbConn);
+        }
       }
     }
   }
 
+  /**
+   * Creates the unique-skier tables. The first time, {@code resortSkiersCount}, which used to be
+   * built by hand, is rebuilt from the rides loaded so far, together with {@code resortSkierSets};
+   * the sets table only appears once complete, so an interrupted rebuild is redone on the next
+   * start. Runs under the schema lock: a Consumer starting meanwhile waits for the rebuild and then
+   * finds the sets table, and none consumes before it has passed here.
+   */
+  private static void createResortSkiersTables(Connection dbConn, Statement dbStmt)
+      throws SQLException {
+    try (ResultSet tables = dbStmt.executeQuery(HAS_SKIER_SETS_QUERY)) {
+      if (tables.next()) {
+        dbStmt.executeUpdate(CREATE_RESORT_SKIERS_QUERY);
+        return;
+      }
+    }
+    dbStmt.executeUpdate(DROP_SKIER_DAYS_QUERY); // an earlier version's table, replaced by the sets
+    dbStmt.executeUpdate(DROP_RESORT_SKIERS_QUERY);
+    dbStmt.executeUpdate(CREATE_RESORT_SKIERS_QUERY);
+    dbStmt.executeUpdate(DROP_NEW_SKIER_SETS_QUERY);
+    dbStmt.executeUpdate(CREATE_NEW_SKIER_SETS_QUERY);
+    ResortSkiersCountDao.rebuild(dbConn, TABLE, NEW_SKIER_SETS_TABLE);
+    dbStmt.executeUpdate(RENAME_NEW_SKIER_SETS_QUERY);
+  }
+
+  /**
+   * Creates the pre-aggregated vertical tables. The first time, they are filled from the rides
+   * loaded so far under temporary names and renamed together once complete, so an interrupted
+   * rebuild is redone on the next start. Runs under the schema lock, like the unique-skier tables.
+   */
+  private static void createSkierVerticalTables(Connection dbConn, Statement dbStmt)
+      throws SQLException {
+    try (ResultSet tables = dbStmt.executeQuery(HAS_SKIER_VERTICALS_QUERY)) {
+      if (tables.next()) return;
+    }
+    for (String table :
+        new String[] {
+          SKIER_DAY_VERTICAL_TABLE, NEW_SKIER_DAY_VERTICAL_TABLE, NEW_SKIER_SEASON_VERTICAL_TABLE
+        }) {
+      dbStmt.executeUpdate(String.format(DROP_TABLE_FORMAT, table));
+    }
+    dbStmt.executeUpdate(
+        String.format(CREATE_SKIER_DAY_VERTICAL_FORMAT, NEW_SKIER_DAY_VERTICAL_TABLE));
+    dbStmt.executeUpdate(
+        String.format(CREATE_SKIER_SEASON_VERTICAL_FORMAT, NEW_SKIER_SEASON_VERTICAL_TABLE));
+    SkierVerticalDao.rebuild(
+        dbConn, TABLE, NEW_SKIER_DAY_VERTICAL_TABLE, NEW_SKIER_SEASON_VERTICAL_TABLE);
+    dbStmt.executeUpdate(RENAME_NEW_SKIER_VERTICALS_QUERY);
+  }
+
+  /**
+   * Takes the named schema lock for this session, waiting while another Consumer holds it. DDL
+   * commits implicitly but does not release a named lock.
+   */
+  private static void lockSchema(Connection dbConn) throws SQLException {
+    try (PreparedStatement ps = dbConn.prepareStatement(GET_LOCK_QUERY)) {
+      ps.setString(1, SCHEMA_LOCK);
+      ps.setInt(2, SCHEMA_LOCK_TIMEOUT_SECONDS);
+      try (ResultSet resultSet = ps.executeQuery()) {
+        if (!resultSet.next() || resultSet.getInt(1) != 1) {
+          throw new SQLException("Timed out waiting for the schema lock " + SCHEMA_LOCK);
+        }
+      }
+    }
+  }
+
+  private static void unlockSchema(Connection dbConn) throws SQLException {
+    try (PreparedStatement ps = dbConn.prepareStatement(RELEASE_LOCK_QUERY)) {
+      ps.setString(1, SCHEMA_LOCK);
+      ps.executeQuery().close();
+    }
+  }
+
   public static BasicDataSource getDataSource() {
     return dataSource;
   }
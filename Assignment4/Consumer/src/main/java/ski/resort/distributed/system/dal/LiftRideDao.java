@@ -3,18 +3,23 @@ package ski.resort.distributed.system.dal;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.apache.commons.dbcp2.BasicDataSource;
-import org.json.JSONObject;
+import ski.resort.distributed.system.models.LiftRide;
 
 public class LiftRideDao {
 
   private static final String TABLE = "liftRides";
 
+  // a replayed request ID hits the unique key and is dropped without an error
   private static final String INSERT_QUERY =
       String.format(
-          "INSERT INTO %s (skierId, resortId, seasonId, dayId, time, liftId) "
-              + "VALUES (?,?,?,?,?,?)",
+          "INSERT INTO %s (skierId, resortId, seasonId, dayId, time, liftId, requestId) "
+              + "VALUES (?,?,?,?,?,?,?) ON DUPLICATE KEY UPDATE requestId = requestId",
           TABLE);
 
   private static BasicDataSource dataSource;
@@ -23,36 +28,115 @@ public class LiftRideDao {
     dataSource = DBCPDataSource.getDataSource();
   }
 
-  public void createLiftRide(final JSONObject liftRide) {
+  public void createLiftRide(final LiftRide liftRide) throws SQLException {
+    createLiftRides(List.of(liftRide));
+  }
+
+  /**
+   * Inserts a batch of lift rides in one JDBC batch and one transaction, together with their
+   * deltas to the pre-aggregated verticals of {@link SkierVerticalDao}. On failure the transaction
+   * is rolled back and the exception rethrown, so the caller can have the rides redelivered.
+   */
+  public void createLiftRides(final List<LiftRide> liftRides) throws SQLException {
     Connection conn = null;
     PreparedStatement preparedStatement = null;
     try {
       conn = dataSource.getConnection();
+      conn.setAutoCommit(false);
       preparedStatement = conn.prepareStatement(INSERT_QUERY);
+      for (LiftRide liftRide : liftRides) {
+        setParameters(preparedStatement, liftRide);
+        preparedStatement.addBatch();
+      }
 
-      // use JSONObject methods to get the metadata
-      preparedStatement.setInt(1, liftRide.getInt("skierID"));
-      preparedStatement.setInt(2, liftRide.getInt("resortID"));
-      preparedStatement.setInt(3, liftRide.getInt("seasonID"));
-      preparedStatement.setInt(4, liftRide.getInt("dayID"));
-      preparedStatement.setInt(5, liftRide.getInt("time"));
-      preparedStatement.setInt(6, liftRide.getInt("liftID"));
-
-      // execute insert SQL statement
-      preparedStatement.executeUpdate();
+      // execute batched insert SQL statements
+      int[] updateCounts = preparedStatement.executeBatch();
+      if (!hasRowCounts(updateCounts)) {
+        // nothing else has run in the transaction yet; insert again a row at a time to get counts
+        conn.rollback();
+        updateCounts = new int[liftRides.size()];
+        for (int i = 0; i < liftRides.size(); i++) {
+          setParameters(preparedStatement, liftRides.get(i));
+          updateCounts[i] = preparedStatement.executeUpdate();
+        }
+      }
+      SkierVerticalDao.addRides(conn, insertedRides(liftRides, updateCounts));
+      conn.commit();
     } catch (SQLException e) {
-      e.printStackTrace();
+      rollbackQuietly(conn);
+      throw e;
     } finally {
       try {
         if (conn != null) {
-          conn.close();
-        }
-        if (preparedStatement != null) {
-          preparedStatement.close();
+          conn.setAutoCommit(true); // connection goes back to the pool
         }
       } catch (SQLException se) {
         se.printStackTrace();
       }
+      closeQuietly(conn, preparedStatement);
+    }
+  }
+
+  /**
+   * Whether the driver reported a row count per statement. A batch rewritten into one multi-row
+   * INSERT (e.g. with {@code rewriteBatchedStatements}) reports {@link Statement#SUCCESS_NO_INFO}
+   * instead, which cannot tell an inserted ride from a replayed one.
+   */
+  private static boolean hasRowCounts(int[] updateCounts) {
+    for (int count : updateCounts) {
+      if (count == Statement.SUCCESS_NO_INFO) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns the rides actually inserted, 1 affected row each. A replayed request ID leaves its row
+   * unchanged, which counts as 0 affected rows (the pool connects with {@code
+   * useAffectedRows}); its vertical is already counted.
+   */
+  private static List<LiftRide> insertedRides(List<LiftRide> liftRides, int[] updateCounts) {
+    final List<LiftRide> inserted = new ArrayList<>(liftRides.size());
+    for (int i = 0; i < liftRides.size(); i++) {
+      if (updateCounts[i] == 1) inserted.add(liftRides.get(i));
+    }
+    return inserted;
+  }
+
+  private void setParameters(PreparedStatement preparedStatement, LiftRide liftRide)
+      throws SQLException {
+    preparedStatement.setInt(1, liftRide.getSkierID());
+    preparedStatement.setInt(2, liftRide.getResortID());
+    preparedStatement.setInt(3, liftRide.getSeasonID());
+    preparedStatement.setInt(4, liftRide.getDayID());
+    preparedStatement.setInt(5, liftRide.getTime());
+    preparedStatement.setInt(6, liftRide.getLiftID());
+    if (liftRide.getRequestID() != null) {
+      preparedStatement.setBytes(7, liftRide.getRequestID());
+    } else {
+      preparedStatement.setNull(7, Types.BINARY); // NULLs never collide in a unique key
+    }
+  }
+
+  private void rollbackQuietly(Connection conn) {
+    try {
+      if (conn != null) {
+        conn.rollback();
+      }
+    } catch (SQLException se) {
+      se.printStackTrace();
+    }
+  }
+
+  private void closeQuietly(Connection conn, PreparedStatement preparedStatement) {
+    try {
+      if (preparedStatement != null) {
+        preparedStatement.close();
+      }
+      if (conn != null) {
+        conn.close();
+      }
+    } catch (SQLException se) {
+      se.printStackTrace();
     }
   }
 }
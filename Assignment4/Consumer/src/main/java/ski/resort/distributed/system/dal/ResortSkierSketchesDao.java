@@ -0,0 +1,80 @@
+package ski.resort.distributed.system.dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.SortedMap;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import ski.resort.distributed.system.models.ResortDay;
+import ski.resort.distributed.system.sketch.HyperLogLog;
+
+/**
+ * Stores each Consumer's HyperLogLog sketch of the skiers per resort day in {@code
+ * resortSkierSketches}, one row per resort day, Consumer and precision. Rows are only ever written
+ * by the Consumer they belong to, so concurrent Consumers never touch the same row.
+ */
+public class ResortSkierSketchesDao {
+
+  private static final String SELECT_QUERY =
+      String.format(
+          "SELECT registers FROM %s WHERE resortID = ? AND seasonID = ? AND dayID = ? "
+              + "AND consumerID = ? AND hllPrecision = ?",
+          DBCPDataSource.SKIER_SKETCHES_TABLE);
+  private static final String UPSERT_QUERY =
+      String.format(
+          "INSERT INTO %s (resortID, seasonID, dayID, consumerID, hllPrecision, registers) "
+              + "VALUES (?,?,?,?,?,?) ON DUPLICATE KEY UPDATE registers = VALUES(registers)",
+          DBCPDataSource.SKIER_SKETCHES_TABLE);
+
+  private static BasicDataSource dataSource;
+
+  public ResortSkierSketchesDao() {
+    dataSource = DBCPDataSource.getDataSource();
+  }
+
+  /** Returns the sketch this Consumer stored for a resort day, or null if there is none. */
+  public HyperLogLog getSketch(String consumerID, int precision, ResortDay resortDay)
+      throws SQLException {
+    try (Connection conn = dataSource.getConnection();
+        PreparedStatement preparedStatement = conn.prepareStatement(SELECT_QUERY)) {
+      preparedStatement.setInt(1, resortDay.resortID());
+      preparedStatement.setInt(2, resortDay.seasonID());
+      preparedStatement.setInt(3, resortDay.dayID());
+      preparedStatement.setString(4, consumerID);
+      preparedStatement.setInt(5, precision);
+      try (ResultSet resultSet = preparedStatement.executeQuery()) {
+        return resultSet.next() ? HyperLogLog.fromBytes(resultSet.getBytes(1)) : null;
+      }
+    }
+  }
+
+  /** Writes this Consumer's sketches, in one JDBC batch and one transaction. */
+  public void putSketches(String consumerID, SortedMap<ResortDay, HyperLogLog> sketches)
+      throws SQLException {
+    try (Connection conn = dataSource.getConnection()) {
+      conn.setAutoCommit(false);
+      try (PreparedStatement preparedStatement = conn.prepareStatement(UPSERT_QUERY)) {
+        for (Map.Entry<ResortDay, HyperLogLog> entry : sketches.entrySet()) {
+          final ResortDay resortDay = entry.getKey();
+          preparedStatement.setInt(1, resortDay.resortID());
+          preparedStatement.setInt(2, resortDay.seasonID());
+          preparedStatement.setInt(3, resortDay.dayID());
+          preparedStatement.setString(4, consumerID);
+          preparedStatement.setInt(5, entry.getValue().getPrecision());
+          preparedStatement.setBytes(6, entry.getValue().toBytes());
+          preparedStatement.addBatch();
+        }
+        preparedStatement.executeBatch();
+        conn.commit();
+      } catch (SQLException e) {
+        conn.rollback();
+        throw e;
+      } finally {
+        conn.setAutoCommit(true); // connection goes back to the pool
+      }
+    }
+  }
+}
@@ -0,0 +1,201 @@
+package ski.resort.distributed.system.dal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+import org.roaringbitmap.RoaringBitmap;
+import ski.resort.distributed.system.models.ResortDay;
+
+/**
+ * Maintains the unique skiers per resort day: {@code resortSkierSets} holds each day's skierIDs as
+ * a serialized Roaring bitmap, and {@code resortSkiersCount} its cardinality, which the Server's
+ * {@code GET /resorts/{resortID}/seasons/{seasonID}/day/{dayID}/skiers} reads by primary key.
+ *
+ * <p>Sets are merged under a row lock, so counts stay exact when a ride is redelivered, when
+ * several Consumers see the same resort day, or after a restart. A day's set never takes more than
+ * 8 KB per 65,536 skierIDs, 16 KB for ids up to 100,000, and much less on sparse days.
+ */
+public class ResortSkiersCountDao {
+
+  private static final String SELECT_SKIERS_QUERY =
+      String.format(
+          "SELECT skiers FROM %s WHERE resortID = ? AND seasonID = ? AND dayID = ? FOR UPDATE",
+          DBCPDataSource.SKIER_SETS_TABLE);
+  private static final String UPSERT_SKIERS_FORMAT =
+      "INSERT INTO %s (resortID, seasonID, dayID, skiers) VALUES (?,?,?,?) "
+          + "ON DUPLICATE KEY UPDATE skiers = VALUES(skiers)";
+  private static final String UPSERT_SKIERS_QUERY =
+      String.format(UPSERT_SKIERS_FORMAT, DBCPDataSource.SKIER_SETS_TABLE);
+  private static final String UPSERT_COUNT_QUERY =
+      String.format(
+          "INSERT INTO %s (resortID, seasonID, dayID, uniqueSkiers) VALUES (?,?,?,?) "
+              + "ON DUPLICATE KEY UPDATE uniqueSkiers = VALUES(uniqueSkiers)",
+          DBCPDataSource.RESORT_SKIERS_TABLE);
+  private static final String SELECT_SKIER_DAYS_QUERY =
+      "SELECT DISTINCT resortID, seasonID, dayID, skierID FROM %s";
+
+  private static BasicDataSource dataSource;
+
+  public ResortSkiersCountDao() {
+    dataSource = DBCPDataSource.getDataSource();
+  }
+
+  /**
+   * Adds skiers to their resort days' sets and counts in one transaction, and returns each day's
+   * merged set. Rows are locked in key order, so concurrent Consumers cannot deadlock on them.
+   */
+  public Map<ResortDay, RoaringBitmap> addSkiers(final SortedMap<ResortDay, RoaringBitmap> skiers)
+      throws SQLException {
+    final Map<ResortDay, RoaringBitmap> merged = new HashMap<>();
+    Connection conn = null;
+    PreparedStatement selectSkiers = null;
+    PreparedStatement upsertSkiers = null;
+    PreparedStatement upsertCount = null;
+    try {
+      conn = dataSource.getConnection();
+      conn.setAutoCommit(false);
+      selectSkiers = conn.prepareStatement(SELECT_SKIERS_QUERY);
+      upsertSkiers = conn.prepareStatement(UPSERT_SKIERS_QUERY);
+      upsertCount = conn.prepareStatement(UPSERT_COUNT_QUERY);
+      for (Map.Entry<ResortDay, RoaringBitmap> entry : skiers.entrySet()) {
+        final ResortDay resortDay = entry.getKey();
+        setResortDay(selectSkiers, resortDay);
+        final RoaringBitmap set;
+        try (ResultSet resultSet = selectSkiers.executeQuery()) {
+          set = resultSet.next() ? fromBytes(resultSet.getBytes(1)) : new RoaringBitmap();
+        }
+        final int before = set.getCardinality();
+        set.or(entry.getValue());
+        merged.put(resortDay, set);
+        if (set.getCardinality() == before) continue; // another Consumer got there first
+
+        addSkierSet(upsertSkiers, resortDay, set);
+        addCount(upsertCount, resortDay, set);
+      }
+      upsertSkiers.executeBatch();
+      upsertCount.executeBatch();
+      conn.commit();
+      return merged;
+    } catch (SQLException e) {
+      rollbackQuietly(conn);
+      throw e;
+    } finally {
+      try {
+        if (conn != null) {
+          conn.setAutoCommit(true); // connection goes back to the pool
+        }
+      } catch (SQLException se) {
+        se.printStackTrace();
+      }
+      closeQuietly(conn, selectSkiers, upsertSkiers, upsertCount);
+    }
+  }
+
+  /**
+   * Builds the set and count of every resort day from the rides in {@code liftRidesTable}, writing
+   * the sets to {@code skierSetsTable}. Used once, when the tables are created.
+   */
+  static void rebuild(Connection conn, String liftRidesTable, String skierSetsTable)
+      throws SQLException {
+    final SortedMap<ResortDay, RoaringBitmap> sets = new TreeMap<>();
+    try (Statement stmt = conn.createStatement()) {
+      stmt.setFetchSize(Integer.MIN_VALUE); // stream the rows rather than buffer them all
+      try (ResultSet resultSet =
+          stmt.executeQuery(String.format(SELECT_SKIER_DAYS_QUERY, liftRidesTable))) {
+        while (resultSet.next()) {
+          final ResortDay resortDay =
+              new ResortDay(resultSet.getInt(1), resultSet.getInt(2), resultSet.getInt(3));
+          sets.computeIfAbsent(resortDay, d -> new RoaringBitmap()).add(resultSet.getInt(4));
+        }
+      }
+    }
+    try (PreparedStatement upsertSkiers =
+            conn.prepareStatement(String.format(UPSERT_SKIERS_FORMAT, skierSetsTable));
+        PreparedStatement upsertCount = conn.prepareStatement(UPSERT_COUNT_QUERY)) {
+      for (Map.Entry<ResortDay, RoaringBitmap> entry : sets.entrySet()) {
+        addSkierSet(upsertSkiers, entry.getKey(), entry.getValue());
+        addCount(upsertCount, entry.getKey(), entry.getValue());
+      }
+      upsertSkiers.executeBatch();
+      upsertCount.executeBatch();
+    }
+  }
+
+  private static void addSkierSet(PreparedStatement ps, ResortDay resortDay, RoaringBitmap set)
+      throws SQLException {
+    setResortDay(ps, resortDay);
+    ps.setBytes(4, toBytes(set));
+    ps.addBatch();
+  }
+
+  private static void addCount(PreparedStatement ps, ResortDay resortDay, RoaringBitmap set)
+      throws SQLException {
+    setResortDay(ps, resortDay);
+    ps.setInt(4, set.getCardinality());
+    ps.addBatch();
+  }
+
+  private static void setResortDay(PreparedStatement ps, ResortDay resortDay)
+      throws SQLException {
+    ps.setInt(1, resortDay.resortID());
+    ps.setInt(2, resortDay.seasonID());
+    ps.setInt(3, resortDay.dayID());
+  }
+
+  /** Serializes in the portable Roaring format, which the Server reads back. */
+  private static byte[] toBytes(RoaringBitmap set) {
+    set.runOptimize(); // consecutive skierIDs compress to runs
+    final ByteBuffer buf = ByteBuffer.allocate(set.serializedSizeInBytes());
+    set.serialize(buf);
+    return buf.array();
+  }
+
+  private static RoaringBitmap fromBytes(byte[] bytes) throws SQLException {
+    final RoaringBitmap set = new RoaringBitmap();
+    try {
+      set.deserialize(ByteBuffer.wrap(bytes));
+    } catch (IOException | RuntimeException e) {
+      throw new SQLException("Corrupt skier set", e);
+    }
+    return set;
+  }
+
+  private void rollbackQuietly(Connection conn) {
+    try {
+      if (conn != null) {
+        conn.rollback();
+      }
+    } catch (SQLException se) {
+      se.printStackTrace();
+    }
+  }
+
+  private void closeQuietly(Connection conn, PreparedStatement... statements) {
+    for (PreparedStatement statement : statements) {
+      try {
+        if (statement != null) {
+          statement.close();
+        }
+      } catch (SQLException se) {
+        se.printStackTrace();
+      }
+    }
+    try {
+      if (conn != null) {
+        conn.close();
+      }
+    } catch (SQLException se) {
+      se.printStackTrace();
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package ski.resort.distributed.system.dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.models.SkierDay;
+import ski.resort.distributed.system.models.SkierSeason;
+
+/**
+ * Maintains the pre-aggregated verticals the Server's vertical GETs read by primary key: {@code
+ * skierDayVertical} per skier day, and {@code skierSeasonVertical} per skier, resort and season.
+ * Each row holds a ride count and a total vertical, raised by the deltas of new rides in the
+ * transaction that inserts them, so the totals always match {@code liftRides}.
+ */
+class SkierVerticalDao {
+
+  private static final int VERTICAL_PER_LIFT_ID = 10; // as the GETs have always counted it
+
+  private static final String ADD_DELTAS =
+      " ON DUPLICATE KEY UPDATE rides = rides + VALUES(rides), "
+          + "totalVertical = totalVertical + VALUES(totalVertical)";
+  private static final String UPSERT_DAY_QUERY =
+      String.format(
+          "INSERT INTO %s (resortID, seasonID, dayID, skierID, rides, totalVertical) "
+              + "VALUES (?,?,?,?,?,?)"
+              + ADD_DELTAS,
+          DBCPDataSource.SKIER_DAY_VERTICAL_TABLE);
+  private static final String UPSERT_SEASON_QUERY =
+      String.format(
+          "INSERT INTO %s (skierID, resortID, seasonID, rides, totalVertical) "
+              + "VALUES (?,?,?,?,?)"
+              + ADD_DELTAS,
+          DBCPDataSource.SKIER_SEASON_VERTICAL_TABLE);
+  private static final String REBUILD_DAY_QUERY =
+      "INSERT INTO %s (resortID, seasonID, dayID, skierID, rides, totalVertical) "
+          + "SELECT resortID, seasonID, dayID, skierID, COUNT(*), SUM(liftID) * "
+          + VERTICAL_PER_LIFT_ID
+          + " FROM %s GROUP BY resortID, seasonID, dayID, skierID";
+  private static final String REBUILD_SEASON_QUERY =
+      "INSERT INTO %s (skierID, resortID, seasonID, rides, totalVertical) "
+          + "SELECT skierID, resortID, seasonID, COUNT(*), SUM(liftID) * "
+          + VERTICAL_PER_LIFT_ID
+          + " FROM %s GROUP BY skierID, resortID, seasonID";
+
+  private SkierVerticalDao() {}
+
+  /**
+   * Adds the rides' counts and verticals on the caller's transaction. Rows are upserted in key
+   * order, days before seasons, so concurrent Consumers cannot deadlock on them.
+   */
+  static void addRides(Connection conn, List<LiftRide> liftRides) throws SQLException {
+    if (liftRides.isEmpty()) return;
+    final SortedMap<SkierDay, Delta> days = new TreeMap<>();
+    final SortedMap<SkierSeason, Delta> seasons = new TreeMap<>();
+    for (LiftRide liftRide : liftRides) {
+      final int vertical = liftRide.getLiftID() * VERTICAL_PER_LIFT_ID;
+      days.computeIfAbsent(SkierDay.of(liftRide), k -> new Delta()).add(vertical);
+      seasons.computeIfAbsent(SkierSeason.of(liftRide), k -> new Delta()).add(vertical);
+    }
+
+    try (PreparedStatement upsertDay = conn.prepareStatement(UPSERT_DAY_QUERY)) {
+      for (Map.Entry<SkierDay, Delta> entry : days.entrySet()) {
+        final SkierDay skierDay = entry.getKey();
+        upsertDay.setInt(1, skierDay.resortID());
+        upsertDay.setInt(2, skierDay.seasonID());
+        upsertDay.setInt(3, skierDay.dayID());
+        upsertDay.setInt(4, skierDay.skierID());
+        upsertDay.setInt(5, entry.getValue().rides);
+        upsertDay.setInt(6, entry.getValue().vertical);
+        upsertDay.addBatch();
+      }
+      upsertDay.executeBatch();
+    }
+    try (PreparedStatement upsertSeason = conn.prepareStatement(UPSERT_SEASON_QUERY)) {
+      for (Map.Entry<SkierSeason, Delta> entry : seasons.entrySet()) {
+        final SkierSeason skierSeason = entry.getKey();
+        upsertSeason.setInt(1, skierSeason.skierID());
+        upsertSeason.setInt(2, skierSeason.resortID());
+        upsertSeason.setInt(3, skierSeason.seasonID());
+        upsertSeason.setInt(4, entry.getValue().rides);
+        upsertSeason.setInt(5, entry.getValue().vertical);
+        upsertSeason.addBatch();
+      }
+      upsertSeason.executeBatch();
+    }
+  }
+
+  /**
+   * Fills {@code dayTable} and {@code seasonTable} from the rides in {@code liftRidesTable}. Used
+   * once, when the tables are created.
+   */
+  static void rebuild(Connection conn, String liftRidesTable, String dayTable, String seasonTable)
+      throws SQLException {
+    try (Statement stmt = conn.createStatement()) {
+      stmt.executeUpdate(String.format(REBUILD_DAY_QUERY, dayTable, liftRidesTable));
+      stmt.executeUpdate(String.format(REBUILD_SEASON_QUERY, seasonTable, liftRidesTable));
+    }
+  }
+
+  /** The rides and vertical a batch adds to one row. */
+  private static class Delta {
+    int rides;
+    int vertical;
+
+    void add(int rideVertical) {
+      rides++;
+      vertical += rideVertical;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package ski.resort.distributed.system.models;
+
+/**
+ * A fully addressed lift ride as received from the queue, with the 16-byte request ID the Server
+ * derived from its idempotency key, or null if it had none.
+ */
+public class LiftRide {
+  private final int skierID;
+  private final int resortID;
+  private final int seasonID;
+  private final int dayID;
+  private final int time;
+  private final int liftID;
+  private final byte[] requestID;
+
+  public LiftRide(int skierID, int resortID, int seasonID, int dayID, int time, int liftID) {
+    this(skierID, resortID, seasonID, dayID, time, liftID, null);
+  }
+
+  public LiftRide(
+      int skierID, int resortID, int seasonID, int dayID, int time, int liftID, byte[] requestID) {
+    this.skierID = skierID;
+    this.resortID = resortID;
+    this.seasonID = seasonID;
+    this.dayID = dayID;
+    this.time = time;
+    this.liftID = liftID;
+    this.requestID = requestID;
+  }
+
+  public int getSkierID() {
+    return skierID;
+  }
+
+  public int getResortID() {
+    return resortID;
+  }
+
+  public int getSeasonID() {
+    return seasonID;
+  }
+
+  public int getDayID() {
+    return dayID;
+  }
+
+  public int getTime() {
+    return time;
+  }
+
+  public int getLiftID() {
+    return liftID;
+  }
+
+  public byte[] getRequestID() {
+    return requestID;
+  }
+}
@@ -0,0 +1,17 @@
+package ski.resort.distributed.system.models;
+
+/** One day of a season at one resort, the unit unique skiers are counted per. */
+public record ResortDay(int resortID, int seasonID, int dayID) implements Comparable<ResortDay> {
+
+  public static ResortDay of(LiftRide liftRide) {
+    return new ResortDay(liftRide.getResortID(), liftRide.getSeasonID(), liftRide.getDayID());
+  }
+
+  /** Orders like the primary keys of the resort-day tables. */
+  @Override
+  public int compareTo(ResortDay o) {
+    int c = Integer.compare(resortID, o.resortID);
+    if (c == 0) c = Integer.compare(seasonID, o.seasonID);
+    return c != 0 ? c : Integer.compare(dayID, o.dayID);
+  }
+}
@@ -0,0 +1,20 @@
+package ski.resort.distributed.system.models;
+
+/** One skier's day at one resort, the unit a day's vertical is summed per. */
+public record SkierDay(int resortID, int seasonID, int dayID, int skierID)
+    implements Comparable<SkierDay> {
+
+  public static SkierDay of(LiftRide liftRide) {
+    return new SkierDay(
+        liftRide.getResortID(), liftRide.getSeasonID(), liftRide.getDayID(), liftRide.getSkierID());
+  }
+
+  /** Orders like the primary key of {@code skierDayVertical}. */
+  @Override
+  public int compareTo(SkierDay o) {
+    int c = Integer.compare(resortID, o.resortID);
+    if (c == 0) c = Integer.compare(seasonID, o.seasonID);
+    if (c == 0) c = Integer.compare(dayID, o.dayID);
+    return c != 0 ? c : Integer.compare(skierID, o.skierID);
+  }
+}
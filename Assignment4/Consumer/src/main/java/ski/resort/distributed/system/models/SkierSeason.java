@@ -0,0 +1,18 @@
+package ski.resort.distributed.system.models;
+
+/** One skier's season at one resort, the unit a season's vertical is summed per. */
+public record SkierSeason(int skierID, int resortID, int seasonID)
+    implements Comparable<SkierSeason> {
+
+  public static SkierSeason of(LiftRide liftRide) {
+    return new SkierSeason(liftRide.getSkierID(), liftRide.getResortID(), liftRide.getSeasonID());
+  }
+
+  /** Orders like the primary key of {@code skierSeasonVertical}. */
+  @Override
+  public int compareTo(SkierSeason o) {
+    int c = Integer.compare(skierID, o.skierID);
+    if (c == 0) c = Integer.compare(resortID, o.resortID);
+    return c != 0 ? c : Integer.compare(seasonID, o.seasonID);
+  }
+}
@@ -0,0 +1,142 @@
+package ski.resort.distributed.system.sketch;
+
+import java.util.Arrays;
+
+/**
+ * A HyperLogLog sketch of skierIDs: an estimate of how many distinct ids were added, in {@code
+ * 2^precision} one-byte registers, with a standard error of about {@code 1.04 / sqrt(2^precision)}.
+ * Sketches merge by taking the maximum of each register, so sketches of overlapping sets of skiers,
+ * e.g. from several Consumers, combine into the sketch of their union.
+ *
+ * <p>The serialized form is the precision byte followed by the registers; the Server has a copy of
+ * this class to read it, and the two must stay in sync. Both modules' tests check them against the
+ * same serialized sketch, {@code consumer-p12-skiers-1-10000.hll}.
+ */
+public class HyperLogLog {
+
+  public static final int MIN_PRECISION = 4;
+  public static final int MAX_PRECISION = 16;
+
+  private final int precision;
+  private final byte[] registers;
+
+  public HyperLogLog(int precision) {
+    if (precision < MIN_PRECISION || precision > MAX_PRECISION) {
+      throw new IllegalArgumentException("HyperLogLog precision out of range: " + precision);
+    }
+    this.precision = precision;
+    this.registers = new byte[1 << precision];
+  }
+
+  private HyperLogLog(int precision, byte[] registers) {
+    this.precision = precision;
+    this.registers = registers;
+  }
+
+  public int getPrecision() {
+    return precision;
+  }
+
+  /** Adds a skierID; returns true if the sketch changed. */
+  public boolean add(int skierID) {
+    final long hash = mix(skierID);
+    final int index = (int) (hash >>> (64 - precision));
+    // the 1 below the index bits caps the count for a hash whose remaining bits are all 0
+    final int rank = Long.numberOfLeadingZeros((hash << precision) | (1L << (precision - 1))) + 1;
+    if (registers[index] >= rank) return false;
+    registers[index] = (byte) rank;
+    return true;
+  }
+
+  /** Merges {@code other} into this sketch; both must have the same precision. */
+  public void merge(HyperLogLog other) {
+    if (other.precision != precision) {
+      throw new IllegalArgumentException("Cannot merge precision " + other.precision);
+    }
+    for (int i = 0; i < registers.length; i++) {
+      if (other.registers[i] > registers[i]) registers[i] = other.registers[i];
+    }
+  }
+
+  /**
+   * Returns the sketch of the same ids at a lower precision. Sketches written with different
+   * precisions are merged after reducing them to the lowest one.
+   */
+  public HyperLogLog reduce(int newPrecision) {
+    if (newPrecision == precision) return copy();
+    if (newPrecision > precision || newPrecision < MIN_PRECISION) {
+      throw new IllegalArgumentException("Cannot reduce precision to " + newPrecision);
+    }
+    final int shift = precision - newPrecision;
+    final HyperLogLog reduced = new HyperLogLog(newPrecision);
+    for (int i = 0; i < registers.length; i++) {
+      if (registers[i] == 0) continue;
+      // the index bits dropped now lead the remaining hash bits
+      final int dropped = i & ((1 << shift) - 1);
+      final int rank =
+          dropped == 0 ? shift + registers[i] : Integer.numberOfLeadingZeros(dropped) - 31 + shift;
+      final int j = i >>> shift;
+      if (rank > reduced.registers[j]) reduced.registers[j] = (byte) rank;
+    }
+    return reduced;
+  }
+
+  /** The estimated number of distinct skierIDs added. */
+  public long estimate() {
+    final int m = registers.length;
+    double sum = 0;
+    int zeros = 0;
+    for (byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) zeros++;
+    }
+    final double estimate = alpha(m) * m * m / sum;
+    if (estimate <= 2.5 * m && zeros > 0) {
+      return Math.round(m * Math.log((double) m / zeros)); // linear counting for small sets
+    }
+    return Math.round(estimate);
+  }
+
+  public HyperLogLog copy() {
+    return new HyperLogLog(precision, registers.clone());
+  }
+
+  public byte[] toBytes() {
+    final byte[] bytes = new byte[1 + registers.length];
+    bytes[0] = (byte) precision;
+    System.arraycopy(registers, 0, bytes, 1, registers.length);
+    return bytes;
+  }
+
+  public static HyperLogLog fromBytes(byte[] bytes) {
+    final int precision = bytes.length > 0 ? bytes[0] : 0;
+    if (precision < MIN_PRECISION
+        || precision > MAX_PRECISION
+        || bytes.length != 1 + (1 << precision)) {
+      throw new IllegalArgumentException("Malformed sketch of " + bytes.length + " bytes");
+    }
+    return new HyperLogLog(precision, Arrays.copyOfRange(bytes, 1, bytes.length));
+  }
+
+  private static double alpha(int m) {
+    switch (m) {
+      case 16:
+        return 0.673;
+      case 32:
+        return 0.697;
+      case 64:
+        return 0.709;
+      default:
+        return 0.7213 / (1 + 1.079 / m);
+    }
+  }
+
+  /** The finalizer of MurmurHash3, which spreads consecutive skierIDs over all 64 bits. */
+  private static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    return key ^ (key >>> 33);
+  }
+}
@@ -0,0 +1,103 @@
+package ski.resort.distributed.system.sketch;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the estimates against exact counts, as the Server sees them: skiers split over three
+ * sketches, one per Consumer, with some skiers seen by two of them, merged on read.
+ */
+class HyperLogLogTest {
+
+  private static final int CONSUMERS = 3;
+  private static final int MAX_SKIERS = 100_000;
+  private static final int TRIALS = 40;
+  // also read by the Server's HyperLogLogTest, which must decode what this copy writes
+  static final String SHARED_SKETCH = "consumer-p12-skiers-1-10000.hll";
+
+  @ParameterizedTest
+  @ValueSource(ints = {12, 14})
+  void mergedEstimatesStayWithinTheStandardError(int precision) {
+    final double standardError = 1.04 / Math.sqrt(1 << precision);
+    final Random random = new Random(precision);
+    double sumSquares = 0;
+    for (int trial = 0; trial < TRIALS; trial++) {
+      // from 100 to 100,000 skiers, evenly on a log scale
+      final int numSkiers = (int) Math.pow(10, 2 + 3.0 * trial / (TRIALS - 1));
+      final Set<Integer> skiers = new HashSet<>();
+      final HyperLogLog[] sketches = new HyperLogLog[CONSUMERS];
+      for (int i = 0; i < CONSUMERS; i++) sketches[i] = new HyperLogLog(precision);
+      while (skiers.size() < numSkiers) {
+        final int skierID = random.nextInt(Integer.MAX_VALUE);
+        skiers.add(skierID);
+        sketches[random.nextInt(CONSUMERS)].add(skierID);
+        if (random.nextInt(4) == 0) sketches[random.nextInt(CONSUMERS)].add(skierID); // redelivery
+      }
+
+      final HyperLogLog merged = sketches[0].copy();
+      for (int i = 1; i < CONSUMERS; i++) merged.merge(sketches[i]);
+      final double error = (merged.estimate() - (double) skiers.size()) / skiers.size();
+      assertTrue(
+          Math.abs(error) < 4 * standardError,
+          numSkiers + " skiers estimated " + merged.estimate() + " at precision " + precision);
+      sumSquares += error * error;
+    }
+
+    // over 40 trials the measured RMS itself varies by about 11%
+    final double rmsError = Math.sqrt(sumSquares / TRIALS);
+    assertTrue(
+        rmsError < 1.25 * standardError,
+        "RMS error " + rmsError + " well above the standard error " + standardError);
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {12, 14})
+  void reducedSketchesEstimateLikeNativeOnes(int precision) {
+    final int lower = precision - 2;
+    final HyperLogLog sketch = new HyperLogLog(precision);
+    final HyperLogLog nativeLower = new HyperLogLog(lower);
+    final Random random = new Random(precision);
+    for (int i = 0; i < MAX_SKIERS; i++) {
+      final int skierID = random.nextInt();
+      sketch.add(skierID);
+      nativeLower.add(skierID);
+    }
+
+    // reducing keeps exactly the registers a sketch of the lower precision would have
+    assertEquals(nativeLower.estimate(), sketch.reduce(lower).estimate());
+  }
+
+  @ParameterizedTest
+  @ValueSource(ints = {HyperLogLog.MIN_PRECISION, 12, HyperLogLog.MAX_PRECISION})
+  void serializesAsWritten(int precision) {
+    final HyperLogLog sketch = new HyperLogLog(precision);
+    for (int skierID = 0; skierID < 10_000; skierID++) sketch.add(skierID);
+
+    final HyperLogLog read = HyperLogLog.fromBytes(sketch.toBytes());
+    assertEquals(precision, read.getPrecision());
+    assertEquals(sketch.estimate(), read.estimate());
+  }
+
+  @Test
+  void writesTheBytesTheServerReads() throws IOException {
+    final HyperLogLog sketch = new HyperLogLog(12);
+    for (int skierID = 1; skierID <= 10_000; skierID++) sketch.add(skierID);
+
+    final byte[] shared;
+    try (InputStream in = getClass().getResourceAsStream(SHARED_SKETCH)) {
+      shared = in.readAllBytes();
+    }
+    assertArrayEquals(shared, sketch.toBytes(), "format changed; update the Server's copy too");
+  }
+}
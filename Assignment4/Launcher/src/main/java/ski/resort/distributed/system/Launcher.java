@@ -0,0 +1,83 @@
+package ski.resort.distributed.system;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.Wrapper;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+
+import javax.servlet.http.HttpServlet;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static ski.resort.distributed.system.utils.Constants.DOTENV;
+
+/**
+ * Runs the Server's servlets in an embedded Tomcat, so the server starts from {@code main} instead
+ * of being deployed as {@code Server_war}.
+ *
+ * <p>Usage: {@code java -jar Launcher.jar}, configured through {@code .env}:
+ *
+ * <ul>
+ *   <li>{@code PORT} (default 8080) and {@code CONTEXT_PATH} (default {@code /Server_war}, which the
+ *       Client already targets)
+ *   <li>{@code THREAD_MODE}: {@code platform} (default) serves requests on a pool of {@code
+ *       MAX_THREADS} platform threads (default 200, as in a stock Tomcat); {@code virtual} serves
+ *       each request on its own virtual thread and needs Java 21 or later at runtime
+ * </ul>
+ */
+public class Launcher {
+
+  private static final int PORT = Integer.parseInt(DOTENV.get("PORT", "8080"));
+  private static final String CONTEXT_PATH = DOTENV.get("CONTEXT_PATH", "/Server_war");
+  private static final String THREAD_MODE = DOTENV.get("THREAD_MODE", "platform");
+  private static final int MAX_THREADS = Integer.parseInt(DOTENV.get("MAX_THREADS", "200"));
+
+  public static void main(String[] args) throws LifecycleException, IOException {
+    final Tomcat tomcat = new Tomcat();
+    tomcat.setBaseDir(Files.createTempDirectory("tomcat").toString());
+    tomcat.setPort(PORT);
+
+    final Connector connector = tomcat.getConnector();
+    if ("virtual".equals(THREAD_MODE)) {
+      connector.getProtocolHandler().setExecutor(newVirtualThreadPerTaskExecutor());
+    } else {
+      connector.setProperty("maxThreads", String.valueOf(MAX_THREADS));
+    }
+
+    // the same listeners and servlets the war registers through its annotations
+    final Context context = tomcat.addContext(CONTEXT_PATH, null);
+    context.addApplicationListener(DBCPContextListener.class.getName());
+    context.addApplicationListener(RabbitMQContextListener.class.getName());
+    context.addApplicationListener(IngestContextListener.class.getName());
+    addServlet(context, new SkierServlet(), "/skiers/*", true);
+    addServlet(context, new ResortServlet(), "/resorts/*", false);
+    addServlet(context, new BulkLiftRideServlet(), "/liftrides", false);
+    addServlet(context, new MetricsServlet(), "/metrics", false);
+
+    tomcat.start();
+    System.out.println(
+        "Serving " + CONTEXT_PATH + " on port " + PORT + " with " + THREAD_MODE + " threads.");
+    tomcat.getServer().await();
+  }
+
+  private static void addServlet(
+      Context context, HttpServlet servlet, String pattern, boolean asyncSupported) {
+    final String name = servlet.getClass().getSimpleName();
+    final Wrapper wrapper = Tomcat.addServlet(context, name, servlet);
+    wrapper.setAsyncSupported(asyncSupported);
+    context.addServletMappingDecoded(pattern, name);
+  }
+
+  /** Looked up reflectively so the module still compiles for Java 17. */
+  private static ExecutorService newVirtualThreadPerTaskExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("THREAD_MODE=virtual needs Java 21 or later.", e);
+    }
+  }
+}
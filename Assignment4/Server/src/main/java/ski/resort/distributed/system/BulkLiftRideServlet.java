@@ -0,0 +1,204 @@
+package ski.resort.distributed.system;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import ski.resort.distributed.system.dedup.IdempotencyKeys;
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.mq.AdmissionController;
+import ski.resort.distributed.system.mq.BatchingPublisher;
+import ski.resort.distributed.system.mq.QueueShards;
+import ski.resort.distributed.system.mq.RabbitMQConnectionPool;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import static ski.resort.distributed.system.utils.Constants.BULK_MAX_RIDES;
+import static ski.resort.distributed.system.utils.Constants.BULK_RIDES_PER_MESSAGE;
+import static ski.resort.distributed.system.utils.Constants.CHANNEL_WAIT_MILLIS;
+import static ski.resort.distributed.system.utils.Constants.CONFIRM_TIMEOUT_MILLIS;
+import static ski.resort.distributed.system.utils.Constants.MAX_RESORT_ID;
+import static ski.resort.distributed.system.utils.Constants.MESSAGE_FORMAT;
+import static ski.resort.distributed.system.utils.Constants.MIN_RESORT_ID;
+import static ski.resort.distributed.system.utils.Constants.RESORT_ID_RANGE_MESSAGE;
+
+/**
+ * POST /liftrides
+ *
+ * <p>Bulk ingestion of fully addressed lift rides, sent either as a JSON array or as NDJSON (one
+ * object per line). Each ride needs integer {@code resortID}, {@code seasonID}, {@code dayID},
+ * {@code skierID}, {@code time} and {@code liftID}, and may carry a string {@code idempotencyKey}
+ * with the same meaning as the {@code Idempotency-Key} header of a single POST. Rides are validated
+ * as they are read, the valid ones are published as batched messages on one channel with a single
+ * confirm wait, and the response lists a status per ride in request order. If the broker is
+ * unavailable or the publish fails, the whole request is answered 503 with {@code Retry-After}.
+ */
+@WebServlet(value = "/liftrides")
+public class BulkLiftRideServlet extends HttpServlet {
+
+  private static final String[] FIELDS = {
+    "resortID", "seasonID", "dayID", "skierID", "time", "liftID"
+  };
+  private static final AMQP.BasicProperties BATCH_PROPS =
+      BatchingPublisher.batchProperties(MESSAGE_FORMAT);
+
+  @Override
+  protected void doPost(HttpServletRequest req, HttpServletResponse resp)
+      throws ServletException, IOException {
+    resp.setContentType("application/json");
+
+    // Refuse quickly rather than read a whole body the broker cannot take.
+    if (!RabbitMQConnectionPool.isAvailable()) {
+      SkierServlet.reject(resp, AdmissionController.Decision.UNAVAILABLE);
+      return;
+    }
+    // A bulk request counts as one publish for admission.
+    final AdmissionController admission = RabbitMQConnectionPool.getAdmissionController();
+    final AdmissionController.Decision decision = admission.tryAdmit();
+    if (decision != AdmissionController.Decision.ADMIT) {
+      SkierServlet.reject(resp, decision);
+      return;
+    }
+    try {
+      ingest(req, resp);
+    } finally {
+      admission.release();
+    }
+  }
+
+  private void ingest(HttpServletRequest req, HttpServletResponse resp) throws IOException {
+    // Validate and encode rides while streaming through the body.
+    final List<String> errors = new ArrayList<>(); // null entry = valid ride
+    final Map<String, List<byte[]>> messagesByQueue = new HashMap<>();
+    int numValid = 0;
+    try {
+      final JSONTokener tokener = new JSONTokener(req.getReader());
+      final char first = tokener.nextClean();
+      if (first == 0) throw tokener.syntaxError("Empty request body");
+      final boolean isArray = first == '[';
+      if (!isArray) tokener.back(); // NDJSON: values separated by newlines
+
+      char next = tokener.nextClean();
+      while (next != 0 && !(isArray && next == ']')) {
+        tokener.back();
+        if (errors.size() == BULK_MAX_RIDES) {
+          resp.setStatus(HttpServletResponse.SC_REQUEST_ENTITY_TOO_LARGE);
+          resp.getWriter().write("At most " + BULK_MAX_RIDES + " lift rides per request");
+          return;
+        }
+
+        final LiftRide liftRide = LiftRide.current();
+        final String error = validate(tokener.nextValue(), liftRide);
+        errors.add(error);
+        if (error == null) {
+          messagesByQueue
+              .computeIfAbsent(QueueShards.queueFor(liftRide.getSkierID()), q -> new ArrayList<>())
+              .add(MESSAGE_FORMAT.encode(liftRide));
+          numValid++;
+        }
+
+        next = tokener.nextClean();
+        if (isArray) {
+          if (next == ',') next = tokener.nextClean();
+          else if (next != ']') throw tokener.syntaxError("Expected ',' or ']'");
+        }
+      }
+      if (isArray && next != ']') throw tokener.syntaxError("Unterminated JSON array");
+    } catch (JSONException e) {
+      resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      resp.getWriter().write("Malformed request body: " + e.getMessage());
+      return;
+    }
+
+    if (numValid > 0 && !publish(messagesByQueue)) {
+      // some rides may have gone through; a retry with idempotency keys does not repeat them
+      SkierServlet.reject(resp, AdmissionController.Decision.UNAVAILABLE);
+      return;
+    }
+
+    resp.setStatus(HttpServletResponse.SC_OK);
+    writeResults(resp.getWriter(), errors, numValid);
+  }
+
+  /** Returns an error message for an invalid ride, or null after filling {@code out}. */
+  private static String validate(Object item, LiftRide out) {
+    if (!(item instanceof JSONObject)) return "Lift ride must be a JSON object";
+    final JSONObject json = (JSONObject) item;
+    final int[] values = new int[FIELDS.length];
+    for (int i = 0; i < FIELDS.length; i++) {
+      final Object value = json.opt(FIELDS[i]);
+      if (!(value instanceof Integer)) return "Missing or non-integer " + FIELDS[i];
+      values[i] = (Integer) value;
+      if (values[i] < 0) return FIELDS[i] + " must not be negative";
+    }
+    if (values[0] < MIN_RESORT_ID || values[0] > MAX_RESORT_ID) {
+      return RESORT_ID_RANGE_MESSAGE;
+    }
+    final Object key = json.opt("idempotencyKey");
+    if (key != null && !(key instanceof String && IdempotencyKeys.apply((String) key, out))) {
+      return "Invalid idempotencyKey";
+    }
+    if (key == null) out.clearRequestID();
+    out.setPath(values[0], values[1], values[2], values[3]);
+    out.setTime(values[4]);
+    out.setLiftID(values[5]);
+    return null;
+  }
+
+  /** Publishes all rides on one channel and waits once for every confirm. */
+  private boolean publish(Map<String, List<byte[]>> messagesByQueue) {
+    Channel channel = null;
+    try {
+      channel = RabbitMQConnectionPool.borrowChannel(CHANNEL_WAIT_MILLIS);
+      if (channel == null) return false;
+      final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+      for (Map.Entry<String, List<byte[]>> entry : messagesByQueue.entrySet()) {
+        final List<byte[]> messages = entry.getValue();
+        for (int from = 0; from < messages.size(); from += BULK_RIDES_PER_MESSAGE) {
+          final int to = Math.min(from + BULK_RIDES_PER_MESSAGE, messages.size());
+          final byte[] batch = MESSAGE_FORMAT.encodeBatch(messages.subList(from, to), scratch);
+          channel.basicPublish(QueueShards.EXCHANGE, entry.getKey(), BATCH_PROPS, batch);
+        }
+      }
+      return channel.waitForConfirms(CONFIRM_TIMEOUT_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } catch (IOException | TimeoutException e) {
+      e.printStackTrace();
+      return false;
+    } finally {
+      if (channel != null) {
+        RabbitMQConnectionPool.returnChannel(channel);
+      }
+    }
+  }
+
+  private static void writeResults(PrintWriter writer, List<String> errors, int numValid) {
+    writer.write("{\"accepted\":" + numValid + ",\"rejected\":" + (errors.size() - numValid));
+    writer.write(",\"results\":[");
+    for (int i = 0; i < errors.size(); i++) {
+      if (i > 0) writer.write(',');
+      final String error = errors.get(i);
+      if (error != null) {
+        writer.write(new JSONObject().put("status", 400).put("message", error).toString());
+      } else {
+        writer.write("{\"status\":201}");
+      }
+    }
+    writer.write("]}");
+  }
+}
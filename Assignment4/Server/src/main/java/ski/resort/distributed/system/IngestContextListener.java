@@ -0,0 +1,38 @@
+package ski.resort.distributed.system;
+
+import ski.resort.distributed.system.ingest.LiftRideIngestServer;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import static ski.resort.distributed.system.utils.Constants.INGEST_PORT;
+import static ski.resort.distributed.system.utils.Constants.NUM_INGEST_EVENT_LOOPS;
+
+/** Starts the Netty ingest front end next to the servlets when {@code INGEST_PORT} is set. */
+@WebListener
+public class IngestContextListener implements ServletContextListener {
+
+  private LiftRideIngestServer ingestServer;
+
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    if (INGEST_PORT <= 0) return;
+
+    System.out.println("Starting Netty ingest server on port " + INGEST_PORT + "...");
+    try {
+      ingestServer = new LiftRideIngestServer(INGEST_PORT, NUM_INGEST_EVENT_LOOPS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException("Failed to start Netty ingest server.", e);
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    if (ingestServer != null) {
+      System.out.println("Shutting down Netty ingest server...");
+      ingestServer.close();
+    }
+  }
+}
@@ -0,0 +1,152 @@
+package ski.resort.distributed.system;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ski.resort.distributed.system.dal.DBCPConnectionPool;
+import ski.resort.distributed.system.dal.LatencyHistogram;
+import ski.resort.distributed.system.dal.QueryExecutor;
+import ski.resort.distributed.system.dal.ResortSkierSketchesDao;
+import ski.resort.distributed.system.dal.ResortSkiersDayDao;
+import ski.resort.distributed.system.dal.RoutingDataSource;
+import ski.resort.distributed.system.dal.SingleFlight;
+import ski.resort.distributed.system.dal.SkierDayVerticalDao;
+import ski.resort.distributed.system.dal.SkierResortTotalsDao;
+import ski.resort.distributed.system.dal.VerticalCache;
+import ski.resort.distributed.system.mq.AdmissionController;
+import ski.resort.distributed.system.mq.ChannelPool;
+import ski.resort.distributed.system.mq.RabbitMQConnectionPool;
+import ski.resort.distributed.system.readmodel.LiftRideReadModel;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/** GET /metrics: channel pool, admission, cache, database, query and read model counters. */
+@WebServlet(value = "/metrics")
+public class MetricsServlet extends HttpServlet {
+
+  @Override
+  protected void doGet(HttpServletRequest req, HttpServletResponse res)
+      throws ServletException, IOException {
+    res.setContentType("application/json");
+
+    final AdmissionController admission = RabbitMQConnectionPool.getAdmissionController();
+    final JSONObject metrics =
+        new JSONObject()
+            .put("rabbitMQAvailable", RabbitMQConnectionPool.isAvailable())
+            .put(
+                "admission",
+                new JSONObject()
+                    .put("inFlight", admission.getInFlight())
+                    .put("rejected", admission.getRejected())
+                    .put("blocked", admission.isBlocked()));
+
+    final ChannelPool pool = RabbitMQConnectionPool.getChannelPool();
+    if (pool != null) {
+      metrics.put(
+          "channelPool",
+          new JSONObject()
+              .put("channels", pool.size())
+              .put("inUse", pool.getInUse())
+              .put("utilization", pool.getUtilization())
+              .put("borrows", pool.getBorrows())
+              .put("timeouts", pool.getTimeouts())
+              .put("avgWaitMicros", pool.getAvgWaitMicros())
+              .put("maxWaitMicros", pool.getMaxWaitMicros())
+              .put("replacedChannels", pool.getReplacedChannels())
+              .put("connectionBorrows", new JSONArray(pool.getConnectionBorrows()))
+              .put("uptimeSeconds", pool.getUptimeSeconds()));
+    }
+
+    metrics.put(
+        "verticalCaches",
+        new JSONObject()
+            .put("skierDay", toJson(SkierDayVerticalDao.getCache()))
+            .put("skierResort", toJson(SkierResortTotalsDao.getCache()))
+            .put("resortDaySketches", toJson(ResortSkierSketchesDao.getCache())));
+    metrics.put(
+        "singleFlight",
+        new JSONObject().put("resortDaySkiers", toJson(ResortSkiersDayDao.getSingleFlight())));
+    final RoutingDataSource dataSource = DBCPConnectionPool.getDataSource();
+    if (dataSource != null) {
+      final JSONArray replicas = new JSONArray();
+      for (RoutingDataSource.Replica replica : dataSource.getReplicas()) {
+        replicas.put(toJson(replica));
+      }
+      final JSONObject databases = new JSONObject().put("replicas", replicas);
+      if (dataSource.getPrimary() != null) {
+        databases.put("primary", toJson(dataSource.getPrimary()));
+      }
+      metrics.put("databases", databases);
+    }
+    final QueryExecutor executor = QueryExecutor.getInstance();
+    final JSONObject queries =
+        new JSONObject().put("connectionWait", toJson(executor.getConnectionWait()));
+    for (QueryExecutor.Query query : executor.getQueries().values()) {
+      queries.put(query.getName(), toJson(query.getLatency()));
+    }
+    metrics.put("queries", queries);
+    final LiftRideReadModel readModel = LiftRideReadModel.getInstance();
+    metrics.put(
+        "readModel",
+        new JSONObject()
+            .put("ready", readModel.isReady())
+            .put("trimmed", readModel.isTrimmed())
+            .put("trimmedAt", readModel.getTrimmedAt())
+            .put("entries", readModel.size())
+            .put("duplicates", readModel.getDuplicates()));
+
+    res.setStatus(HttpServletResponse.SC_OK);
+    res.getWriter().write(metrics.toString());
+  }
+
+  private static JSONObject toJson(VerticalCache cache) {
+    final CacheStats stats = cache.stats();
+    final JSONObject json =
+        new JSONObject()
+            .put("enabled", cache.isEnabled())
+            .put("size", cache.size())
+            .put("hits", stats.hitCount())
+            .put("misses", stats.missCount())
+            .put("hitRate", stats.hitRate())
+            .put("evictions", stats.evictionCount())
+            .put("loadFailures", stats.loadFailureCount())
+            .put("avgLoadMicros", stats.averageLoadPenalty() / 1000.0);
+    if (cache.getSingleFlight() != null) {
+      json.put("singleFlight", toJson(cache.getSingleFlight()));
+    }
+    return json;
+  }
+
+  private static JSONObject toJson(RoutingDataSource.Replica replica) {
+    return new JSONObject()
+        .put("name", replica.getName())
+        .put("healthy", replica.isHealthy())
+        .put("lagSeconds", replica.getLagSeconds())
+        .put("outstanding", replica.getOutstanding())
+        .put("reads", replica.getReads())
+        .put("ejections", replica.getEjections())
+        .put("activeConnections", replica.getActiveConnections());
+  }
+
+  private static JSONObject toJson(LatencyHistogram histogram) {
+    return new JSONObject()
+        .put("count", histogram.getCount())
+        .put("meanMicros", histogram.getMeanMicros())
+        .put("p50Micros", histogram.getPercentileMicros(50))
+        .put("p99Micros", histogram.getPercentileMicros(99))
+        .put("maxMicros", histogram.getPercentileMicros(100));
+  }
+
+  private static JSONObject toJson(SingleFlight<?> singleFlight) {
+    return new JSONObject()
+        .put("calls", singleFlight.getCalls())
+        .put("queries", singleFlight.getLoads())
+        .put("collapsed", singleFlight.getCollapsed())
+        .put("inFlight", singleFlight.getInFlight());
+  }
+}
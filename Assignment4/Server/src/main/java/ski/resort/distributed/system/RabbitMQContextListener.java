@@ -0,0 +1,35 @@
+package ski.resort.distributed.system;
+
+import ski.resort.distributed.system.mq.RabbitMQConnectionPool;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.servlet.annotation.WebListener;
+
+import static ski.resort.distributed.system.utils.Constants.RECONNECT_INTERVAL_MILLIS;
+
+@WebListener
+public class RabbitMQContextListener implements ServletContextListener {
+  @Override
+  public void contextInitialized(ServletContextEvent sce) {
+    System.out.println("Initializing RabbitMQ Connection Pool...");
+    try {
+      RabbitMQConnectionPool.init();
+      System.out.println("Finished RabbitMQ Connection Pool initialization...");
+    } catch (Exception e) {
+      // GETs do not need RabbitMQ, so keep serving them; POSTs are spooled or refused meanwhile
+      e.printStackTrace();
+      RabbitMQConnectionPool.connectInBackground(RECONNECT_INTERVAL_MILLIS);
+    }
+  }
+
+  @Override
+  public void contextDestroyed(ServletContextEvent sce) {
+    System.out.println("Shutting down RabbitMQ Connection Pool...");
+    try {
+      RabbitMQConnectionPool.close();
+    } catch (Exception e) {
+      throw new RuntimeException("Failed to close RabbitMQ Connection Pool.", e);
+    }
+  }
+}
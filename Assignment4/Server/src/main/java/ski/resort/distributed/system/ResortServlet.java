@@ -1,7 +1,12 @@
 package ski.resort.distributed.system;
 
-import org.json.JSONObject;
+import ski.resort.distributed.system.dal.ResortSkierSketchesDao;
 import ski.resort.distributed.system.dal.ResortSkiersDayDao;
+import ski.resort.distributed.system.readmodel.LiftRideReadModel;
+import ski.resort.distributed.system.utils.ETags;
+import ski.resort.distributed.system.utils.JsonBodies;
+import ski.resort.distributed.system.utils.Route;
+import ski.resort.distributed.system.utils.RouteMatch;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -10,12 +15,33 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
 
+import static ski.resort.distributed.system.utils.Constants.MAX_RESORT_ID;
+import static ski.resort.distributed.system.utils.Constants.MIN_RESORT_ID;
+import static ski.resort.distributed.system.utils.Constants.RESORT_ID_RANGE_MESSAGE;
+import static ski.resort.distributed.system.utils.Constants.UNIQUE_SKIERS_MODE;
+import static ski.resort.distributed.system.utils.Constants.UNIQUE_SKIERS_MODE_HLL;
+
 @WebServlet(value = "/resorts/*")
 public class ResortServlet extends HttpServlet {
 
-  private static final int MIN_RESORT_ID = 1;
-  private static final int MAX_RESORT_ID = 10;
-  private static final int NUM_OF_URL_PARTS = 7;
+  /** /{resortID}/seasons/{seasonID}/day/{dayID}/skiers */
+  private static final Route RESORT_DAY_SKIERS_ROUTE =
+      Route.builder()
+          .param(MIN_RESORT_ID, MAX_RESORT_ID)
+          .literal("seasons")
+          .param()
+          .literal("day")
+          .param()
+          .literal("skiers")
+          .build();
+
+  private static final boolean HLL_MODE = UNIQUE_SKIERS_MODE_HLL.equals(UNIQUE_SKIERS_MODE);
+  private static final byte[] NUM_SKIERS = JsonBodies.intField("numSkiers");
+  private static final byte[] EMPTY_URL = JsonBodies.constant("Empty ULR.");
+  private static final byte[] INVALID_URL_LENGTH = JsonBodies.constant("Invalid URL length.");
+  private static final byte[] INVALID_NUMBER_FORMAT =
+      JsonBodies.constant("Invalid number format in path parameters.");
+  private static final byte[] RESORT_ID_OUT_OF_RANGE = JsonBodies.constant(RESORT_ID_RANGE_MESSAGE);
 
   /** GET /resorts/{resortID}/seasons/{seasonID}/day/{dayID}/skiers */
   @Override
@@ -24,53 +50,47 @@ public class ResortServlet extends HttpServlet {
     res.setContentType("application/json");
 
     final String urlPath = req.getPathInfo();
-    if (!isUrlValid(urlPath, res)) return;
+    final RouteMatch match = RouteMatch.current();
+    if (!isUrlValid(urlPath, RESORT_DAY_SKIERS_ROUTE.match(urlPath, match), res)) return;
 
-    final String[] pathParts = urlPath.split("/");
-    final int resortID = Integer.parseInt(pathParts[1]);
-    final int seasonID = Integer.parseInt(pathParts[3]);
-    final int dayID = Integer.parseInt(pathParts[5]);
+    final int resortID = match.get(0);
+    final int seasonID = match.get(1);
+    final int dayID = match.get(2);
 
-    final ResortSkiersDayDao resortSkiersDayDao = new ResortSkiersDayDao();
-    final int uniqueSkiers = resortSkiersDayDao.getUniqueSkiers(resortID, seasonID, dayID);
-    final String msg = new JSONObject().put("numSkiers", uniqueSkiers).toString();
-
-    res.setStatus(HttpServletResponse.SC_OK);
-    res.getWriter().write(msg);
+    final LiftRideReadModel readModel = LiftRideReadModel.getInstance();
+    final int version = readModel.getResortDayVersion(resortID, seasonID, dayID);
+    if (version != LiftRideReadModel.UNKNOWN && ETags.notModified(req, res, version)) return;
+    int uniqueSkiers = readModel.getUniqueSkiers(resortID, seasonID, dayID);
+    if (uniqueSkiers == LiftRideReadModel.UNKNOWN && HLL_MODE) {
+      final ResortSkierSketchesDao resortSkierSketchesDao = new ResortSkierSketchesDao();
+      uniqueSkiers = resortSkierSketchesDao.getUniqueSkiers(resortID, seasonID, dayID);
+    } else if (uniqueSkiers == LiftRideReadModel.UNKNOWN) {
+      final ResortSkiersDayDao resortSkiersDayDao = new ResortSkiersDayDao();
+      uniqueSkiers = resortSkiersDayDao.getUniqueSkiers(resortID, seasonID, dayID);
+    }
+    JsonBodies.writeInt(res, NUM_SKIERS, uniqueSkiers);
   }
 
-  private boolean isUrlValid(final String urlPath, HttpServletResponse resp) {
-    try {
-      if (urlPath == null || urlPath.isEmpty()) {
-        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        resp.getWriter().write("Empty ULR.");
-        return false;
-      }
+  private boolean isUrlValid(
+      final String urlPath, final Route.Result result, HttpServletResponse resp)
+      throws IOException {
+    if (urlPath == null || urlPath.isEmpty()) {
+      JsonBodies.write(resp, HttpServletResponse.SC_BAD_REQUEST, EMPTY_URL);
+      return false;
+    }
 
-      String[] pathParts = urlPath.split("/");
-      if (pathParts.length != NUM_OF_URL_PARTS) {
-        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        resp.getWriter().write("Invalid URL length.");
+    switch (result) {
+      case NO_MATCH:
+        JsonBodies.write(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_URL_LENGTH);
         return false;
-      }
-
-      try {
-        final int resortID = Integer.parseInt(pathParts[1]);
-        if (resortID < MIN_RESORT_ID || resortID > MAX_RESORT_ID) {
-          resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
-          resp.getWriter().write("Resort ID must be between 1 and 10.");
-          return false;
-        }
-        final int seasonID = Integer.parseInt(pathParts[3]);
-        final int dayID = Integer.parseInt(pathParts[5]);
-      } catch (NumberFormatException e) {
-        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        resp.getWriter().write("Invalid number format in path parameters.");
+      case BAD_NUMBER:
+        JsonBodies.write(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_NUMBER_FORMAT);
+        return false;
+      case OUT_OF_RANGE:
+        JsonBodies.write(resp, HttpServletResponse.SC_NOT_FOUND, RESORT_ID_OUT_OF_RANGE);
         return false;
-      }
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+      default:
+        return true;
     }
-    return true;
   }
 }
@@ -1,40 +1,147 @@
 package ski.resort.distributed.system;
 
-import com.rabbitmq.client.*;
-import org.json.JSONObject;
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
 import ski.resort.distributed.system.dal.SkierDayVerticalDao;
 import ski.resort.distributed.system.dal.SkierResortTotalsDao;
+import ski.resort.distributed.system.codec.LiftRideJsonCodec;
+import ski.resort.distributed.system.dedup.IdempotencyKeys;
+import ski.resort.distributed.system.dedup.IdempotencyWindow;
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.mq.AdmissionController;
+import ski.resort.distributed.system.mq.AsyncConfirmPublisher;
+import ski.resort.distributed.system.mq.BatchingPublisher;
+import ski.resort.distributed.system.mq.LiftRidePublisher;
+import ski.resort.distributed.system.mq.QueueShards;
+import ski.resort.distributed.system.mq.RabbitMQConnectionPool;
+import ski.resort.distributed.system.readmodel.LiftRideReadModel;
+import ski.resort.distributed.system.spool.LiftRideSpool;
+import ski.resort.distributed.system.utils.ETags;
+import ski.resort.distributed.system.utils.JsonBodies;
+import ski.resort.distributed.system.utils.Route;
+import ski.resort.distributed.system.utils.RouteMatch;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
-import static ski.resort.distributed.system.utils.Constants.DOTENV;
+import static ski.resort.distributed.system.utils.Constants.BATCH_MAX_DELAY_MICROS;
+import static ski.resort.distributed.system.utils.Constants.BATCH_MAX_SIZE;
+import static ski.resort.distributed.system.utils.Constants.BATCH_VERTICAL_MAX_SKIERS;
+import static ski.resort.distributed.system.utils.Constants.CHANNEL_WAIT_MILLIS;
+import static ski.resort.distributed.system.utils.Constants.CONFIRM_TIMEOUT_MILLIS;
+import static ski.resort.distributed.system.utils.Constants.MAX_RESORT_ID;
+import static ski.resort.distributed.system.utils.Constants.MESSAGE_FORMAT;
+import static ski.resort.distributed.system.utils.Constants.MIN_RESORT_ID;
+import static ski.resort.distributed.system.utils.Constants.NUM_ASYNC_CHANNEL;
+import static ski.resort.distributed.system.utils.Constants.NUM_BATCH_FLUSHERS;
+import static ski.resort.distributed.system.utils.Constants.POST_MODE;
+import static ski.resort.distributed.system.utils.Constants.POST_MODE_ASYNC;
+import static ski.resort.distributed.system.utils.Constants.POST_MODE_BATCH;
+import static ski.resort.distributed.system.utils.Constants.POST_MODE_SYNC;
+import static ski.resort.distributed.system.utils.Constants.RESORT_ID_RANGE_MESSAGE;
+import static ski.resort.distributed.system.utils.Constants.RETRY_AFTER_SECONDS;
+import static ski.resort.distributed.system.utils.Constants.SPOOL_COMMIT_INTERVAL_MICROS;
+import static ski.resort.distributed.system.utils.Constants.SPOOL_DIR;
+import static ski.resort.distributed.system.utils.Constants.SPOOL_MAX_SEGMENTS;
+import static ski.resort.distributed.system.utils.Constants.SPOOL_REPLAY_BATCH_SIZE;
+import static ski.resort.distributed.system.utils.Constants.SPOOL_SEGMENT_BYTES;
 
-@WebServlet(value = "/skiers/*")
+@WebServlet(value = "/skiers/*", asyncSupported = true)
 public class SkierServlet extends HttpServlet {
 
-  private static final int NUM_OF_URL_PARTS_A = 8;
-  private static final int NUM_OF_URL_PARTS_B = 5;
-  private static final int NUM_CHANNEL = 50;
+  /** /{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}, also served by ingest */
+  public static final Route SKIER_DAY_ROUTE =
+      Route.builder()
+          .param(MIN_RESORT_ID, MAX_RESORT_ID)
+          .literal("seasons")
+          .param()
+          .literal("days")
+          .param()
+          .literal("skiers")
+          .param()
+          .build();
+
+  /** /{resortID}/seasons/{seasonID}/days/{dayID}/skiers?skierIDs=1,2,3 */
+  private static final Route SKIER_DAY_BATCH_ROUTE =
+      Route.builder()
+          .param(MIN_RESORT_ID, MAX_RESORT_ID)
+          .literal("seasons")
+          .param()
+          .literal("days")
+          .param()
+          .literal("skiers")
+          .build();
+
+  /** /{skierID}/resorts/{resortID}/vertical */
+  private static final Route SKIER_RESORT_ROUTE =
+      Route.builder()
+          .param()
+          .literal("resorts")
+          .param(MIN_RESORT_ID, MAX_RESORT_ID)
+          .literal("vertical")
+          .build();
+
   private static final int DEFAULT_SEASON = 2024;
-  private static final String QUEUE_NAME = "SkierServletPostQueue";
+  private static final byte[] TOTAL_VERTICAL = JsonBodies.intField("totalVertical");
+  private static final byte[] MISSING_PARAMETERS = JsonBodies.constant("Missing parameters");
+  private static final byte[] INVALID_URL_FORMAT = JsonBodies.constant("Invalid URL format");
+  private static final byte[] INVALID_NUMBER_FORMAT =
+      JsonBodies.constant("Invalid number format in path parameters");
+  private static final byte[] RESORT_ID_OUT_OF_RANGE = JsonBodies.constant(RESORT_ID_RANGE_MESSAGE);
+  public static final AMQP.BasicProperties MESSAGE_PROPS =
+      new AMQP.BasicProperties.Builder().contentType(MESSAGE_FORMAT.contentType()).build();
 
-  private BlockingQueue<Channel> channelPool;
+  private volatile LiftRidePublisher asyncPublisher; // null when POSTs use the channel pool
+  private LiftRideSpool spool; // null when spooling is disabled
 
   @Override
   public void init() throws ServletException {
     super.init();
 
-    // set up RabbitMQ connections
-    setUpRabbitMQConnectionPool();
+    // set up the non-blocking publisher, if POSTs use one
+    setUpAsyncPublisher();
+
+    // set up the local spool, if enabled
+    if (!SPOOL_DIR.isEmpty()) {
+      try {
+        spool =
+            new LiftRideSpool(
+                Path.of(SPOOL_DIR),
+                SPOOL_SEGMENT_BYTES,
+                SPOOL_MAX_SEGMENTS,
+                SPOOL_COMMIT_INTERVAL_MICROS,
+                MESSAGE_FORMAT,
+                SPOOL_REPLAY_BATCH_SIZE,
+                CONFIRM_TIMEOUT_MILLIS);
+      } catch (IOException e) {
+        throw new ServletException("Failed to open the lift ride spool.", e);
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    if (asyncPublisher instanceof BatchingPublisher) {
+      ((BatchingPublisher) asyncPublisher).close();
+    }
+    if (spool != null) {
+      spool.close();
+    }
+    super.destroy();
   }
 
   @Override
@@ -43,40 +150,128 @@ public class SkierServlet extends HttpServlet {
     res.setContentType("application/json");
 
     final String urlPath = req.getPathInfo();
-    final String[] pathParts = urlPath.split("/");
+    final RouteMatch match = RouteMatch.current();
 
-    if (pathParts.length == NUM_OF_URL_PARTS_A) {
+    Route.Result result = SKIER_DAY_ROUTE.match(urlPath, match);
+    if (result != Route.Result.NO_MATCH) {
       // GET /skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}
-      if (!isValidSkierLongUrl(urlPath, res)) return;
+      if (!isValidMatch(urlPath, result, res)) return;
 
-      final int resortID = Integer.parseInt(pathParts[1]);
-      final int seasonID = Integer.parseInt(pathParts[3]);
-      final int dayID = Integer.parseInt(pathParts[5]);
-      final int skierID = Integer.parseInt(pathParts[7]);
+      final int resortID = match.get(0);
+      final int seasonID = match.get(1);
+      final int dayID = match.get(2);
+      final int skierID = match.get(3);
 
-      final SkierDayVerticalDao skierDayVerticalDao = new SkierDayVerticalDao();
-      final int tv = skierDayVerticalDao.getTotalVertical(resortID, seasonID, dayID, skierID);
-      final String msg = new JSONObject().put("totalVertical", tv).toString();
+      final LiftRideReadModel readModel = LiftRideReadModel.getInstance();
+      final int version = readModel.getSkierDayVersion(resortID, seasonID, dayID, skierID);
+      if (version != LiftRideReadModel.UNKNOWN && ETags.notModified(req, res, version)) return;
+      int tv = readModel.getSkierDayVertical(resortID, seasonID, dayID, skierID);
+      if (tv == LiftRideReadModel.UNKNOWN) {
+        final SkierDayVerticalDao skierDayVerticalDao = new SkierDayVerticalDao();
+        tv = skierDayVerticalDao.getTotalVertical(resortID, seasonID, dayID, skierID);
+      }
+      JsonBodies.writeInt(res, TOTAL_VERTICAL, tv);
+      return;
+    }
 
-      res.setStatus(HttpServletResponse.SC_OK);
-      res.getWriter().write(msg);
+    result = SKIER_DAY_BATCH_ROUTE.match(urlPath, match);
+    if (result != Route.Result.NO_MATCH) {
+      // GET /skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers?skierIDs=1,2,3
+      if (!isValidMatch(urlPath, result, res)) return;
+      getTotalVerticals(req, res, match.get(0), match.get(1), match.get(2));
+      return;
+    }
 
-    } else if (pathParts.length == NUM_OF_URL_PARTS_B) {
+    result = SKIER_RESORT_ROUTE.match(urlPath, match);
+    if (result != Route.Result.NO_MATCH) {
       // GET /skiers/{skierID}/resorts/{resortID}/vertical
-      if (!isValidSkierShortUrl(urlPath, res)) return;
-      final int skierID = Integer.parseInt(pathParts[1]);
-      final int resortID = Integer.parseInt(pathParts[3]);
+      if (!isValidMatch(urlPath, result, res)) return;
+      final int skierID = match.get(0);
+      final int resortID = match.get(1);
+
+      final LiftRideReadModel readModel = LiftRideReadModel.getInstance();
+      final int version = readModel.getSkierResortVersion(skierID, resortID, DEFAULT_SEASON);
+      if (version != LiftRideReadModel.UNKNOWN && ETags.notModified(req, res, version)) return;
+      int tv = readModel.getSkierResortVertical(skierID, resortID, DEFAULT_SEASON);
+      if (tv == LiftRideReadModel.UNKNOWN) {
+        SkierResortTotalsDao skierResortTotalsDao = new SkierResortTotalsDao();
+        tv = skierResortTotalsDao.getTotalVertical(skierID, resortID, DEFAULT_SEASON);
+      }
+      JsonBodies.writeInt(res, TOTAL_VERTICAL, tv);
+      return;
+    }
 
-      SkierResortTotalsDao skierResortTotalsDao = new SkierResortTotalsDao();
-      final int tv = skierResortTotalsDao.getTotalVertical(skierID, resortID, DEFAULT_SEASON);
-      final String msg = new JSONObject().put("totalVertical", tv).toString();
+    isValidMatch(urlPath, result, res);
+  }
 
-      res.setStatus(HttpServletResponse.SC_OK);
-      res.getWriter().write(msg);
-    } else {
+  /**
+   * Answers the day's total vertical of many skiers at once: from the read model when it is ready,
+   * otherwise from the vertical cache and one grouped query for the skiers it misses. The JSON is
+   * written straight to the response as it is produced.
+   */
+  private void getTotalVerticals(
+      HttpServletRequest req, HttpServletResponse res, int resortID, int seasonID, int dayID)
+      throws IOException {
+    final int[] skierIDs = parseSkierIDs(req.getParameter("skierIDs"));
+    if (skierIDs == null) {
+      res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      res.getWriter().write("skierIDs must be a comma-separated list of skier IDs");
+      return;
+    }
+    if (skierIDs.length > BATCH_VERTICAL_MAX_SKIERS) {
       res.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-      res.getWriter().write("Invalid URL format");
+      res.getWriter().write("At most " + BATCH_VERTICAL_MAX_SKIERS + " skiers per request");
+      return;
+    }
+
+    final LiftRideReadModel readModel = LiftRideReadModel.getInstance();
+    final int[] totalVerticals = new int[skierIDs.length];
+    final int[] unknown = new int[skierIDs.length]; // positions the read model cannot answer
+    int numUnknown = 0;
+    for (int i = 0; i < skierIDs.length; i++) {
+      totalVerticals[i] = readModel.getSkierDayVertical(resortID, seasonID, dayID, skierIDs[i]);
+      if (totalVerticals[i] == LiftRideReadModel.UNKNOWN) unknown[numUnknown++] = i;
+    }
+    if (numUnknown > 0) {
+      final int[] unknownIDs = new int[numUnknown];
+      for (int i = 0; i < numUnknown; i++) unknownIDs[i] = skierIDs[unknown[i]];
+      final int[] loaded =
+          new SkierDayVerticalDao().getTotalVerticals(resortID, seasonID, dayID, unknownIDs);
+      if (loaded == null) {
+        res.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+        res.getWriter().write("Failed to fetch total verticals.");
+        return;
+      }
+      for (int i = 0; i < numUnknown; i++) totalVerticals[unknown[i]] = loaded[i];
+    }
+
+    res.setStatus(HttpServletResponse.SC_OK);
+    final PrintWriter writer = res.getWriter();
+    writer.write("{\"resortID\":" + resortID);
+    writer.write(",\"seasonID\":" + seasonID);
+    writer.write(",\"dayID\":" + dayID);
+    writer.write(",\"skiers\":[");
+    for (int i = 0; i < skierIDs.length; i++) {
+      if (i > 0) writer.write(',');
+      writer.write("{\"skierID\":" + skierIDs[i] + ",\"totalVertical\":" + totalVerticals[i] + '}');
+    }
+    writer.write("]}");
+  }
+
+  /** Parses distinct skier IDs in their first order, or returns null if the list is invalid. */
+  private static int[] parseSkierIDs(String param) {
+    if (param == null || param.isEmpty()) return null;
+    final String[] tokens = param.split(",", -1);
+    final int[] skierIDs = new int[tokens.length];
+    try {
+      for (int i = 0; i < tokens.length; i++) {
+        skierIDs[i] = Integer.parseInt(tokens[i].trim());
+        if (skierIDs[i] < 0) return null;
+      }
+    } catch (NumberFormatException e) {
+      return null;
     }
+    return Arrays.stream(skierIDs).distinct().toArray();
   }
 
   @Override
@@ -85,41 +280,70 @@ public class SkierServlet extends HttpServlet {
     resp.setContentType("application/json"); // According to the API spec
 
     final String urlPath = req.getPathInfo();
-    if (!isValidSkierLongUrl(urlPath, resp)) return;
-
-    // Parse and convert the req info into string for further JSON processing.
-    StringBuilder jsonBuffer = new StringBuilder();
-    String line;
-    try (BufferedReader reader = req.getReader()) {
-      while ((line = reader.readLine()) != null) {
-        jsonBuffer.append(line);
-      }
-    } catch (IOException e) {
+    final RouteMatch match = RouteMatch.current();
+    if (!isValidMatch(urlPath, SKIER_DAY_ROUTE.match(urlPath, match), resp)) return;
+    final int resortID = match.get(0);
+    final int seasonID = match.get(1);
+    final int dayID = match.get(2);
+    final int skierID = match.get(3);
+
+    // Decode the body straight into the reusable lift ride and encode the queue message.
+    final LiftRide liftRide = LiftRide.current();
+    if (!LiftRideJsonCodec.readBody(req.getInputStream(), liftRide)) {
+      resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+      resp.getWriter().write("Invalid lift ride in request body");
+      return;
+    }
+    if (!IdempotencyKeys.apply(req.getHeader(IdempotencyKeys.HEADER), liftRide)) {
       resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-      resp.getWriter().write("bad request");
+      resp.getWriter().write("Invalid Idempotency-Key header");
       return;
     }
-    JSONObject jsonObject = new JSONObject(jsonBuffer.toString());
+    final long requestKey = requestKey(liftRide);
+    if (requestKey != 0 && IdempotencyWindow.getInstance().contains(requestKey)) {
+      // a retry of a POST that was already confirmed: answer as the first attempt was answered
+      resp.setStatus(HttpServletResponse.SC_CREATED);
+      resp.getWriter().write("POST request has been successfully processed.");
+      return;
+    }
+    final byte[] message =
+        MESSAGE_FORMAT.encode(liftRide.setPath(resortID, seasonID, dayID, skierID));
 
-    // Add other info.
-    String[] pathParts = urlPath.split("/");
-    jsonObject
-        .put("resortID", Integer.valueOf(pathParts[1]))
-        .put("seasonID", pathParts[3])
-        .put("dayID", pathParts[5])
-        .put("skierID", Integer.valueOf(pathParts[7]));
+    // Refuse (or spool) quickly rather than queue up behind a slow broker.
+    if (!RabbitMQConnectionPool.isAvailable()) {
+      spoolOrReject(req, resp, liftRide, AdmissionController.Decision.UNAVAILABLE);
+      return;
+    }
+    final AdmissionController admission = RabbitMQConnectionPool.getAdmissionController();
+    final AdmissionController.Decision decision = admission.tryAdmit();
+    if (decision != AdmissionController.Decision.ADMIT) {
+      spoolOrReject(req, resp, liftRide, decision);
+      return;
+    }
+
+    final String queueName = QueueShards.queueFor(skierID);
+    final LiftRidePublisher publisher = getAsyncPublisher();
+    if (publisher != null) {
+      publishAsync(req, publisher, queueName, message, requestKey, admission);
+      return;
+    }
 
     Channel channel = null;
     try {
-      channel = channelPool.take(); // Acquire channel from the pool
-      channel.confirmSelect(); // Enable confirm mode
+      // Acquire channel from the pool
+      channel = RabbitMQConnectionPool.borrowChannel(CHANNEL_WAIT_MILLIS);
+      if (channel == null) {
+        spoolOrReject(req, resp, liftRide, AdmissionController.Decision.UNAVAILABLE);
+        return;
+      }
 
       // Publish message
-      channel.basicPublish("", QUEUE_NAME, null, jsonObject.toString().getBytes());
+      channel.basicPublish(QueueShards.EXCHANGE, queueName, MESSAGE_PROPS, message);
 
       // Wait for RabbitMQ ACK
-      if (channel.waitForConfirms()) {
+      if (channel.waitForConfirms(CONFIRM_TIMEOUT_MILLIS)) {
         // Message successfully acknowledged
+        rememberConfirmed(requestKey);
         resp.setStatus(HttpServletResponse.SC_CREATED);
         resp.getWriter().write("POST request has been successfully processed.");
       } else {
@@ -131,91 +355,214 @@ public class SkierServlet extends HttpServlet {
       e.printStackTrace();
       resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
       resp.getWriter().write("Internal server error.");
+    } catch (TimeoutException e) {
+      reject(resp, AdmissionController.Decision.UNAVAILABLE);
     } catch (IOException e) {
       e.printStackTrace();
       resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
       resp.getWriter().write("Failed to communicate with RabbitMQ.");
     } finally {
+      admission.release();
       if (channel != null) {
-        channelPool.add(channel); // Return channel to the pool
+        RabbitMQConnectionPool.returnChannel(channel); // Return channel to the pool
       }
     }
   }
 
-  private void setUpRabbitMQConnectionPool() {
-    // init RabbitMQ connections
-    ConnectionFactory connectionFactory = new ConnectionFactory();
-    connectionFactory.setHost(DOTENV.get("RMQ_HOST"));
-    connectionFactory.setPort(Integer.parseInt(DOTENV.get("RMQ_PORT")));
-    connectionFactory.setUsername(DOTENV.get("RMQ_USER"));
-    connectionFactory.setPassword(DOTENV.get("RMQ_PW"));
+  static void reject(HttpServletResponse resp, AdmissionController.Decision decision)
+      throws IOException {
+    resp.setStatus(decision.status());
+    resp.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+    resp.getWriter().write(decision.message());
+  }
 
-    Connection connection;
-    try {
-      connection = connectionFactory.newConnection();
-    } catch (IOException | TimeoutException e) {
-      e.printStackTrace();
+  /**
+   * Hands the publish to the async publisher and releases the servlet thread. The response is
+   * written from the broker's confirm callback, or from the timeout listener if no confirm arrives.
+   * The publish itself times out too, so a lost confirm still frees its admission slot.
+   */
+  private void publishAsync(
+      HttpServletRequest req,
+      LiftRidePublisher publisher,
+      String queueName,
+      byte[] body,
+      long requestKey,
+      AdmissionController admission) {
+    final AsyncResponse response = new AsyncResponse(req);
+    publisher
+        .publish(queueName, body)
+        .orTimeout(CONFIRM_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        .whenComplete(
+            (acked, e) -> {
+              admission.release();
+              if (e instanceof TimeoutException) {
+                response.complete(
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    "Timed out waiting for RabbitMQ ACK.");
+              } else if (e != null) {
+                e.printStackTrace();
+                response.complete(
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    "Failed to communicate with RabbitMQ.");
+              } else if (acked) {
+                rememberConfirmed(requestKey);
+                response.complete(
+                    HttpServletResponse.SC_CREATED,
+                    "POST request has been successfully processed.");
+              } else {
+                response.complete(
+                    HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+                    "Failed to process POST request.");
+              }
+            });
+  }
+
+  /**
+   * Accepts the ride into the local spool when RabbitMQ cannot take it now, answering once it is
+   * on disk. Without a spool, or when the spool is full, the POST is refused.
+   */
+  private void spoolOrReject(
+      HttpServletRequest req,
+      HttpServletResponse resp,
+      LiftRide liftRide,
+      AdmissionController.Decision decision)
+      throws IOException {
+    if (spool == null) {
+      reject(resp, decision);
       return;
     }
+    final long requestKey = requestKey(liftRide);
+    final AsyncResponse response = new AsyncResponse(req);
+    spool
+        .append(liftRide)
+        .whenComplete(
+            (spooled, e) -> {
+              if (e == null && spooled) {
+                rememberConfirmed(requestKey);
+                response.complete(
+                    HttpServletResponse.SC_CREATED, "POST request has been accepted.");
+              } else {
+                response.reject(decision);
+              }
+            });
+  }
 
-    // channelPool setup.
-    channelPool = new LinkedBlockingQueue<>();
-    for (int i = 0; i < NUM_CHANNEL; i++) {
-      try {
-        Channel newChannel = connection.createChannel();
-        newChannel.queueDeclare(QUEUE_NAME, false, false, false, null);
-        channelPool.add(newChannel);
-      } catch (IOException e) {
-        e.printStackTrace();
+  /**
+   * Returns the key the idempotency window tracks for the ride, or 0 if it has no request ID. The
+   * window skips a request ID whose high half is 0; the Consumer still drops its duplicates.
+   */
+  public static long requestKey(LiftRide liftRide) {
+    return liftRide.hasRequestID() ? liftRide.getRequestIDHigh() : 0;
+  }
+
+  public static void rememberConfirmed(long requestKey) {
+    if (requestKey != 0) IdempotencyWindow.getInstance().add(requestKey);
+  }
+
+  private LiftRidePublisher getAsyncPublisher() {
+    if (asyncPublisher == null && !POST_MODE_SYNC.equals(POST_MODE)) {
+      synchronized (this) {
+        if (asyncPublisher == null) setUpAsyncPublisher(); // RabbitMQ may have come back
       }
     }
+    return asyncPublisher;
   }
 
-  private boolean isValidSkierLongUrl(final String urlPath, HttpServletResponse resp) {
+  private void setUpAsyncPublisher() {
+    final Connection connection = RabbitMQConnectionPool.getConnection();
+    if (connection == null) return;
+
     try {
-      if (urlPath == null || urlPath.isEmpty()) {
-        resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
-        resp.getWriter().write("Missing parameters");
-        return false;
+      if (POST_MODE_ASYNC.equals(POST_MODE)) {
+        asyncPublisher =
+            new AsyncConfirmPublisher(connection, MESSAGE_PROPS, NUM_ASYNC_CHANNEL);
+      } else if (POST_MODE_BATCH.equals(POST_MODE)) {
+        asyncPublisher =
+            new BatchingPublisher(
+                connection,
+                MESSAGE_FORMAT,
+                NUM_BATCH_FLUSHERS,
+                BATCH_MAX_SIZE,
+                BATCH_MAX_DELAY_MICROS,
+                CONFIRM_TIMEOUT_MILLIS);
       }
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
 
-      String[] pathParts = urlPath.split("/");
-      if (pathParts.length != NUM_OF_URL_PARTS_A) {
-        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        resp.getWriter().write("Invalid URL format");
-        return false;
+  /** Completes an async POST exactly once, whichever of its outcome or the timeout comes first. */
+  private static class AsyncResponse implements AsyncListener {
+    private final AsyncContext asyncContext;
+    private final AtomicBoolean done = new AtomicBoolean(false);
+
+    AsyncResponse(HttpServletRequest req) {
+      asyncContext = req.startAsync();
+      asyncContext.setTimeout(CONFIRM_TIMEOUT_MILLIS);
+      asyncContext.addListener(this);
+    }
+
+    void complete(int status, String msg) {
+      if (!done.compareAndSet(false, true)) return; // outcome and timeout may race
+      try {
+        HttpServletResponse resp = (HttpServletResponse) asyncContext.getResponse();
+        resp.setStatus(status);
+        resp.getWriter().write(msg);
+      } catch (IOException e) {
+        e.printStackTrace();
+      } finally {
+        asyncContext.complete();
       }
+    }
 
+    void reject(AdmissionController.Decision decision) {
+      if (!done.compareAndSet(false, true)) return;
       try {
-        final int resortID = Integer.parseInt(pathParts[1]);
-        final int seasonID = Integer.parseInt(pathParts[3]);
-        final int dayID = Integer.parseInt(pathParts[5]);
-        final int skierID = Integer.parseInt(pathParts[7]);
-      } catch (NumberFormatException e) {
-        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        resp.getWriter().write("Invalid number format in path parameters");
-        return false;
+        SkierServlet.reject((HttpServletResponse) asyncContext.getResponse(), decision);
+      } catch (IOException e) {
+        e.printStackTrace();
+      } finally {
+        asyncContext.complete();
       }
-    } catch (IOException e) {
-      throw new RuntimeException(e);
     }
-    return true;
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      complete(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Timed out waiting for RabbitMQ ACK.");
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      complete(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal server error.");
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {}
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {}
   }
 
-  private boolean isValidSkierShortUrl(final String urlPath, HttpServletResponse resp) {
-    try {
-      String[] pathParts = urlPath.split("/");
-      try {
-        final int skierID = Integer.parseInt(pathParts[1]);
-        final int resortID = Integer.parseInt(pathParts[3]);
-      } catch (NumberFormatException e) {
-        resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
-        resp.getWriter().write("Invalid number format in path parameters");
+  private boolean isValidMatch(
+      final String urlPath, final Route.Result result, HttpServletResponse resp)
+      throws IOException {
+    if (urlPath == null || urlPath.isEmpty()) {
+      JsonBodies.write(resp, HttpServletResponse.SC_NOT_FOUND, MISSING_PARAMETERS);
+      return false;
+    }
+
+    switch (result) {
+      case NO_MATCH:
+        JsonBodies.write(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_URL_FORMAT);
         return false;
-      }
-    } catch (IOException e) {
-      throw new RuntimeException(e);
+      case BAD_NUMBER:
+        JsonBodies.write(resp, HttpServletResponse.SC_BAD_REQUEST, INVALID_NUMBER_FORMAT);
+        return false;
+      case OUT_OF_RANGE:
+        JsonBodies.write(resp, HttpServletResponse.SC_NOT_FOUND, RESORT_ID_OUT_OF_RANGE);
+        return false;
+      default:
+        return true;
     }
-    return true;
   }
 }
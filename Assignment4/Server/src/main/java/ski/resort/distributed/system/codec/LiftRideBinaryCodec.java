@@ -0,0 +1,80 @@
+package ski.resort.distributed.system.codec;
+
+import ski.resort.distributed.system.models.LiftRide;
+
+/**
+ * Fixed-width binary encoding of lift rides for the queue, sent with content type {@value
+ * #CONTENT_TYPE}. A message is a 4-byte header followed by {@code count} 24-byte records:
+ *
+ * <pre>
+ * header: version (u8) | flags (u8) | count (u16)
+ * record: skierID | resortID | seasonID | dayID | time | liftID   (big-endian int32 each)
+ * </pre>
+ *
+ * With {@link #FLAG_REQUEST_IDS} set, each record is followed by a 16-byte request ID, all zeros
+ * for a ride without one. A single POST is a message with a count of one. Batches use the same
+ * layout with more records.
+ */
+public class LiftRideBinaryCodec {
+
+  public static final String CONTENT_TYPE = "application/x-lift-ride";
+  public static final byte VERSION = 1;
+  public static final int HEADER_BYTES = 4;
+  public static final int RECORD_BYTES = 24;
+  public static final int REQUEST_ID_BYTES = 16;
+  public static final byte FLAG_REQUEST_IDS = 0x01;
+  public static final int MAX_RECORDS = 0xFFFF;
+
+  private LiftRideBinaryCodec() {}
+
+  /** Encodes one lift ride as a complete message. */
+  public static byte[] encode(LiftRide liftRide) {
+    if (!liftRide.hasRequestID()) {
+      final byte[] out = new byte[HEADER_BYTES + RECORD_BYTES];
+      putHeader(out, 0, 1, (byte) 0);
+      putRecord(out, HEADER_BYTES, liftRide);
+      return out;
+    }
+    final byte[] out = new byte[HEADER_BYTES + RECORD_BYTES + REQUEST_ID_BYTES];
+    putHeader(out, 0, 1, FLAG_REQUEST_IDS);
+    putRecord(out, HEADER_BYTES, liftRide);
+    putLong(out, HEADER_BYTES + RECORD_BYTES, liftRide.getRequestIDHigh());
+    putLong(out, HEADER_BYTES + RECORD_BYTES + 8, liftRide.getRequestIDLow());
+    return out;
+  }
+
+  /** Writes a message header for {@code count} records at {@code pos}. */
+  public static void putHeader(byte[] out, int pos, int count, byte flags) {
+    if (count > MAX_RECORDS) throw new IllegalArgumentException("Too many records: " + count);
+    out[pos] = VERSION;
+    out[pos + 1] = flags;
+    out[pos + 2] = (byte) (count >>> 8);
+    out[pos + 3] = (byte) count;
+  }
+
+  /** Returns true if a message written by {@link #encode} carries a request ID. */
+  public static boolean hasRequestID(byte[] message) {
+    return (message[1] & FLAG_REQUEST_IDS) != 0;
+  }
+
+  private static void putRecord(byte[] out, int pos, LiftRide liftRide) {
+    putInt(out, pos, liftRide.getSkierID());
+    putInt(out, pos + 4, liftRide.getResortID());
+    putInt(out, pos + 8, liftRide.getSeasonID());
+    putInt(out, pos + 12, liftRide.getDayID());
+    putInt(out, pos + 16, liftRide.getTime());
+    putInt(out, pos + 20, liftRide.getLiftID());
+  }
+
+  private static void putLong(byte[] out, int pos, long v) {
+    putInt(out, pos, (int) (v >>> 32));
+    putInt(out, pos + 4, (int) v);
+  }
+
+  private static void putInt(byte[] out, int pos, int v) {
+    out[pos] = (byte) (v >>> 24);
+    out[pos + 1] = (byte) (v >>> 16);
+    out[pos + 2] = (byte) (v >>> 8);
+    out[pos + 3] = (byte) v;
+  }
+}
@@ -0,0 +1,79 @@
+package ski.resort.distributed.system.codec;
+
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * Wire formats for lift rides on the queue. The format travels as the AMQP content type, so the
+ * Consumer can decode either one and the two can be switched without draining the queue.
+ */
+public enum LiftRideFormat {
+  /** One JSON object per ride; a batch is a JSON array of them. */
+  JSON("application/json") {
+    @Override
+    public byte[] encode(LiftRide liftRide) {
+      return LiftRideJsonCodec.encode(liftRide);
+    }
+
+    @Override
+    public byte[] encodeBatch(List<byte[]> messages, ByteArrayOutputStream scratch) {
+      scratch.reset();
+      scratch.write('[');
+      for (int i = 0; i < messages.size(); i++) {
+        if (i > 0) scratch.write(',');
+        scratch.writeBytes(messages.get(i));
+      }
+      scratch.write(']');
+      return scratch.toByteArray();
+    }
+  },
+
+  /** Fixed-width records, see {@link LiftRideBinaryCodec}. */
+  BINARY(LiftRideBinaryCodec.CONTENT_TYPE) {
+    @Override
+    public byte[] encode(LiftRide liftRide) {
+      return LiftRideBinaryCodec.encode(liftRide);
+    }
+
+    @Override
+    public byte[] encodeBatch(List<byte[]> messages, ByteArrayOutputStream scratch) {
+      final int header = LiftRideBinaryCodec.HEADER_BYTES;
+      final int record = LiftRideBinaryCodec.RECORD_BYTES;
+      boolean withRequestIDs = false;
+      for (byte[] message : messages) {
+        withRequestIDs |= LiftRideBinaryCodec.hasRequestID(message);
+      }
+
+      // with any request ID in the batch, every record gets one; the rest stay zero
+      final int stride = record + (withRequestIDs ? LiftRideBinaryCodec.REQUEST_ID_BYTES : 0);
+      final byte[] out = new byte[header + messages.size() * stride];
+      LiftRideBinaryCodec.putHeader(
+          out, 0, messages.size(), withRequestIDs ? LiftRideBinaryCodec.FLAG_REQUEST_IDS : 0);
+      int pos = header;
+      for (byte[] message : messages) {
+        // each message holds exactly one record, and maybe its request ID, after its own header
+        System.arraycopy(message, header, out, pos, message.length - header);
+        pos += stride;
+      }
+      return out;
+    }
+  };
+
+  private final String contentType;
+
+  LiftRideFormat(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public String contentType() {
+    return contentType;
+  }
+
+  /** Encodes one lift ride as a complete message. */
+  public abstract byte[] encode(LiftRide liftRide);
+
+  /** Combines messages produced by {@link #encode} into one batched message. */
+  public abstract byte[] encodeBatch(List<byte[]> messages, ByteArrayOutputStream scratch);
+}
@@ -0,0 +1,255 @@
+package ski.resort.distributed.system.codec;
+
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads the {@code {"time": .., "liftID": ..}} body of a lift-ride POST and writes the queue
+ * message, both at byte level. Bodies are read into a per-thread buffer and scanned in place, and
+ * messages are written into another per-thread buffer, so the only allocation per POST is the final
+ * message array handed to RabbitMQ.
+ */
+public class LiftRideJsonCodec {
+
+  public static final int MAX_BODY_BYTES = 1024;
+  private static final int MAX_MESSAGE_BYTES = 256;
+
+  private static final byte[] KEY_TIME = bytes("time");
+  private static final byte[] KEY_LIFT_ID = bytes("liftID");
+
+  private static final byte[] FIELD_SKIER_ID = bytes("{\"skierID\":");
+  private static final byte[] FIELD_RESORT_ID = bytes(",\"resortID\":");
+  private static final byte[] FIELD_SEASON_ID = bytes(",\"seasonID\":");
+  private static final byte[] FIELD_DAY_ID = bytes(",\"dayID\":");
+  private static final byte[] FIELD_TIME = bytes(",\"time\":");
+  private static final byte[] FIELD_LIFT_ID = bytes(",\"liftID\":");
+  private static final byte[] FIELD_REQUEST_ID = bytes(",\"requestID\":\"");
+  private static final byte[] HEX_DIGITS = bytes("0123456789abcdef");
+
+  // one byte over the limit, to tell a body of exactly MAX_BODY_BYTES from a longer one
+  private static final ThreadLocal<byte[]> BODY_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[MAX_BODY_BYTES + 1]);
+  private static final ThreadLocal<byte[]> MESSAGE_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[MAX_MESSAGE_BYTES]);
+  private static final ThreadLocal<Scanner> SCANNER = ThreadLocal.withInitial(Scanner::new);
+
+  private LiftRideJsonCodec() {}
+
+  /**
+   * Reads a POST body from the stream into {@code liftRide}. Returns false if the body is over
+   * {@link #MAX_BODY_BYTES}, is not a JSON object, or lacks an integer {@code time} or {@code
+   * liftID}.
+   */
+  public static boolean readBody(InputStream in, LiftRide liftRide) throws IOException {
+    final byte[] buf = BODY_BUFFER.get();
+    int len = 0;
+    int n;
+    while ((n = in.read(buf, len, buf.length - len)) > 0) {
+      len += n;
+      if (len > MAX_BODY_BYTES) return false; // body too large for a lift ride
+    }
+    return decode(buf, 0, len, liftRide);
+  }
+
+  /** Decodes a POST body held in {@code buf[off, off + len)} into {@code liftRide}. */
+  public static boolean decode(byte[] buf, int off, int len, LiftRide liftRide) {
+    return SCANNER.get().reset(buf, off, off + len).scan(liftRide);
+  }
+
+  /** Encodes the queue message for a lift ride. */
+  public static byte[] encode(LiftRide liftRide) {
+    final byte[] out = MESSAGE_BUFFER.get();
+    int pos = put(out, 0, FIELD_SKIER_ID);
+    pos = putInt(out, pos, liftRide.getSkierID());
+    pos = put(out, pos, FIELD_RESORT_ID);
+    pos = putInt(out, pos, liftRide.getResortID());
+    pos = put(out, pos, FIELD_SEASON_ID);
+    pos = putInt(out, pos, liftRide.getSeasonID());
+    pos = put(out, pos, FIELD_DAY_ID);
+    pos = putInt(out, pos, liftRide.getDayID());
+    pos = put(out, pos, FIELD_TIME);
+    pos = putInt(out, pos, liftRide.getTime());
+    pos = put(out, pos, FIELD_LIFT_ID);
+    pos = putInt(out, pos, liftRide.getLiftID());
+    if (liftRide.hasRequestID()) {
+      pos = put(out, pos, FIELD_REQUEST_ID);
+      pos = putHex(out, pos, liftRide.getRequestIDHigh());
+      pos = putHex(out, pos, liftRide.getRequestIDLow());
+      out[pos++] = '"';
+    }
+    out[pos++] = '}';
+    return Arrays.copyOf(out, pos); // basicPublish takes a whole array
+  }
+
+  private static int put(byte[] out, int pos, byte[] src) {
+    System.arraycopy(src, 0, out, pos, src.length);
+    return pos + src.length;
+  }
+
+  /** Writes the decimal digits of {@code value} at {@code pos} and returns the new position. */
+  static int putInt(byte[] out, int pos, int value) {
+    long v = value;
+    if (v < 0) {
+      out[pos++] = '-';
+      v = -v;
+    }
+    int digits = 1;
+    for (long t = v; t >= 10; t /= 10) digits++;
+    for (int i = pos + digits - 1; i >= pos; i--) {
+      out[i] = (byte) ('0' + v % 10);
+      v /= 10;
+    }
+    return pos + digits;
+  }
+
+  /** Writes {@code value} as 16 lowercase hex digits at {@code pos}. */
+  private static int putHex(byte[] out, int pos, long value) {
+    for (int i = 15; i >= 0; i--) {
+      out[pos + i] = HEX_DIGITS[(int) value & 0xF];
+      value >>>= 4;
+    }
+    return pos + 16;
+  }
+
+  private static byte[] bytes(String s) {
+    return s.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * A minimal scanner over one flat JSON object. It understands enough JSON to skip unknown members
+   * (strings, numbers, literals and nested values) and parses the two members it needs as ints.
+   */
+  private static class Scanner {
+    private byte[] buf;
+    private int end;
+    private int pos;
+
+    Scanner reset(byte[] buf, int off, int end) {
+      this.buf = buf;
+      this.pos = off;
+      this.end = end;
+      return this;
+    }
+
+    boolean scan(LiftRide liftRide) {
+      boolean hasTime = false;
+      boolean hasLiftID = false;
+      if (!expect('{')) return false;
+      if (peek() == '}') return false;
+
+      while (true) {
+        if (!expect('"')) return false;
+        final int keyStart = pos;
+        if (!skipStringBody()) return false;
+        final int keyEnd = pos - 1;
+        if (!expect(':')) return false;
+
+        if (keyEquals(keyStart, keyEnd, KEY_TIME)) {
+          final long v = parseInt();
+          if (v == Long.MIN_VALUE) return false;
+          liftRide.setTime((int) v);
+          hasTime = true;
+        } else if (keyEquals(keyStart, keyEnd, KEY_LIFT_ID)) {
+          final long v = parseInt();
+          if (v == Long.MIN_VALUE) return false;
+          liftRide.setLiftID((int) v);
+          hasLiftID = true;
+        } else if (!skipValue()) {
+          return false;
+        }
+
+        final int c = next();
+        if (c == '}') break;
+        if (c != ',') return false;
+      }
+      return hasTime && hasLiftID && peek() == -1;
+    }
+
+    /** Returns the next non-whitespace byte without consuming it, or -1 at the end. */
+    private int peek() {
+      while (pos < end && isWhitespace(buf[pos])) pos++;
+      return pos < end ? buf[pos] : -1;
+    }
+
+    private int next() {
+      final int c = peek();
+      if (c != -1) pos++;
+      return c;
+    }
+
+    private boolean expect(char c) {
+      return next() == c;
+    }
+
+    private boolean keyEquals(int start, int keyEnd, byte[] key) {
+      return Arrays.equals(buf, start, keyEnd, key, 0, key.length);
+    }
+
+    /** Parses an int, optionally quoted. Returns Long.MIN_VALUE if it is not one. */
+    private long parseInt() {
+      final boolean quoted = peek() == '"';
+      if (quoted) pos++;
+      boolean negative = false;
+      if (pos < end && buf[pos] == '-') {
+        negative = true;
+        pos++;
+      }
+      final int start = pos;
+      long v = 0;
+      while (pos < end && buf[pos] >= '0' && buf[pos] <= '9') {
+        v = v * 10 + (buf[pos++] - '0');
+        if (v > Integer.MAX_VALUE) return Long.MIN_VALUE;
+      }
+      if (pos == start) return Long.MIN_VALUE;
+      if (quoted && (pos >= end || buf[pos++] != '"')) return Long.MIN_VALUE;
+      return negative ? -v : v;
+    }
+
+    /** Skips the rest of a string whose opening quote was consumed, including the closing one. */
+    private boolean skipStringBody() {
+      while (pos < end) {
+        final byte c = buf[pos++];
+        if (c == '\\') {
+          pos++;
+        } else if (c == '"') {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private boolean skipValue() {
+      final int c = peek();
+      if (c == '"') {
+        pos++;
+        return skipStringBody();
+      }
+      if (c == '{' || c == '[') {
+        int depth = 0;
+        while (pos < end) {
+          final byte b = buf[pos++];
+          if (b == '"') {
+            if (!skipStringBody()) return false;
+          } else if (b == '{' || b == '[') {
+            depth++;
+          } else if ((b == '}' || b == ']') && --depth == 0) {
+            return true;
+          }
+        }
+        return false;
+      }
+      // number or literal: runs until the next delimiter
+      final int start = pos;
+      while (pos < end && buf[pos] != ',' && buf[pos] != '}' && !isWhitespace(buf[pos])) pos++;
+      return pos > start;
+    }
+
+    private static boolean isWhitespace(byte b) {
+      return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+    }
+  }
+}
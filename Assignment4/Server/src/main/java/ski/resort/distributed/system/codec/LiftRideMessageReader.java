@@ -0,0 +1,106 @@
+package ski.resort.distributed.system.codec;
+
+import com.rabbitmq.client.AMQP;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.mq.BatchingPublisher;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Reads the lift rides back out of a queue message written by this Server, in any of its formats:
+ * a single ride or a batch, as JSON or {@link LiftRideBinaryCodec} records. Rides are decoded one
+ * at a time into a reused {@link LiftRide}, with their request IDs, so the read model can drop a
+ * ride it has already applied.
+ */
+public class LiftRideMessageReader {
+
+  private LiftRideMessageReader() {}
+
+  /**
+   * Decodes each ride of the message into {@code liftRide} and passes it to {@code action}.
+   *
+   * @throws IllegalArgumentException if the message is malformed
+   */
+  public static void forEach(
+      AMQP.BasicProperties props, byte[] body, LiftRide liftRide, Consumer<LiftRide> action) {
+    if (LiftRideBinaryCodec.CONTENT_TYPE.equals(props.getContentType())) {
+      readBinary(body, liftRide, action);
+      return;
+    }
+    final String message = new String(body, StandardCharsets.UTF_8);
+    if (BatchingPublisher.BATCH_MESSAGE_TYPE.equals(props.getType())) {
+      final JSONArray array = new JSONArray(message);
+      for (int i = 0; i < array.length(); i++) {
+        action.accept(fromJson(array.getJSONObject(i), liftRide));
+      }
+    } else {
+      action.accept(fromJson(new JSONObject(message), liftRide));
+    }
+  }
+
+  private static void readBinary(byte[] body, LiftRide liftRide, Consumer<LiftRide> action) {
+    final int header = LiftRideBinaryCodec.HEADER_BYTES;
+    if (body.length < header || body[0] != LiftRideBinaryCodec.VERSION) {
+      throw new IllegalArgumentException("Unsupported lift ride message");
+    }
+    final int count = (body[2] & 0xFF) << 8 | (body[3] & 0xFF);
+    final int stride =
+        LiftRideBinaryCodec.RECORD_BYTES
+            + ((body[1] & LiftRideBinaryCodec.FLAG_REQUEST_IDS) != 0
+                ? LiftRideBinaryCodec.REQUEST_ID_BYTES
+                : 0);
+    if (body.length != header + count * stride) {
+      throw new IllegalArgumentException("Truncated lift ride message: " + body.length + " bytes");
+    }
+    for (int pos = header; pos < body.length; pos += stride) {
+      liftRide.setPath(
+          getInt(body, pos + 4), getInt(body, pos + 8), getInt(body, pos + 12), getInt(body, pos));
+      liftRide.setTime(getInt(body, pos + 16));
+      liftRide.setLiftID(getInt(body, pos + 20));
+      final boolean hasRequestIDs = stride > LiftRideBinaryCodec.RECORD_BYTES;
+      final long requestIDHigh = hasRequestIDs ? getLong(body, pos + 24) : 0;
+      final long requestIDLow = hasRequestIDs ? getLong(body, pos + 32) : 0;
+      if (requestIDHigh == 0 && requestIDLow == 0) {
+        liftRide.clearRequestID(); // none, or the padding of a batch where others have one
+      } else {
+        liftRide.setRequestID(requestIDHigh, requestIDLow);
+      }
+      action.accept(liftRide);
+    }
+  }
+
+  private static LiftRide fromJson(JSONObject json, LiftRide liftRide) {
+    liftRide.setPath(
+        json.getInt("resortID"),
+        json.getInt("seasonID"),
+        json.getInt("dayID"),
+        json.getInt("skierID"));
+    liftRide.setTime(json.getInt("time"));
+    liftRide.setLiftID(json.getInt("liftID"));
+    final String requestID = json.optString("requestID", null);
+    if (requestID == null) {
+      liftRide.clearRequestID();
+    } else if (requestID.length() == 32) {
+      liftRide.setRequestID(
+          Long.parseUnsignedLong(requestID, 0, 16, 16),
+          Long.parseUnsignedLong(requestID, 16, 32, 16));
+    } else {
+      throw new IllegalArgumentException("Malformed request ID: " + requestID);
+    }
+    return liftRide;
+  }
+
+  private static long getLong(byte[] b, int pos) {
+    return (long) getInt(b, pos) << 32 | getInt(b, pos + 4) & 0xFFFFFFFFL;
+  }
+
+  private static int getInt(byte[] b, int pos) {
+    return (b[pos] & 0xFF) << 24
+        | (b[pos + 1] & 0xFF) << 16
+        | (b[pos + 2] & 0xFF) << 8
+        | (b[pos + 3] & 0xFF);
+  }
+}
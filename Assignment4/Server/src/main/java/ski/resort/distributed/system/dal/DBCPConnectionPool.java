@@ -3,6 +3,9 @@ package ski.resort.distributed.system.dal;
 import org.apache.commons.dbcp2.BasicDataSource;
 import ski.resort.distributed.system.utils.Constants;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class DBCPConnectionPool {
 
   // Database connection details
@@ -28,7 +31,7 @@ public class DBCPConnectionPool {
   private static final String CREATE_DB_QUERY =
       String.format("CREATE DATABASE IF NOT EXISTS %s", Constants.DATABASE);
 
-  private static BasicDataSource dataSource;
+  private static RoutingDataSource dataSource;
 
   public static synchronized void init() {
     // make sure only one collection pool exists
@@ -36,30 +39,70 @@ public class DBCPConnectionPool {
       return; // already initialized
     }
 
-    // initialize the connection pool
-    dataSource = new BasicDataSource();
     try {
       Class.forName("com.mysql.cj.jdbc.Driver");
     } catch (ClassNotFoundException e) {
       throw new RuntimeException("Can not find MySQL JDBC driver class", e);
     }
 
+    // one pool per read replica; RDS_HOST alone when no replicas are listed
+    final List<RoutingDataSource.Replica> replicas = new ArrayList<>();
+    final String replicaHosts = Constants.DOTENV.get("RDS_REPLICA_HOSTS", "");
+    for (String host : (replicaHosts.isEmpty() ? HOST_NAME : replicaHosts).split(",")) {
+      replicas.add(createReplica(host.trim(), false));
+    }
+    final String primaryHost = Constants.DOTENV.get("RDS_PRIMARY_HOST", "");
+    final RoutingDataSource.Replica primary =
+        primaryHost.isEmpty() ? null : createReplica(primaryHost.trim(), true);
+
+    dataSource =
+        new RoutingDataSource(
+            replicas,
+            primary,
+            Constants.REPLICA_HEALTH_CHECK_MILLIS,
+            Constants.MAX_REPLICA_LAG_SECONDS);
+  }
+
+  /**
+   * Creates the pool of one database, given as {@code host} or {@code host:port}. The primary's
+   * pool only serves fresh reads and failover, and shares the primary's connection limit with the
+   * Consumers' writers, so it opens no connections up front and only a few at most.
+   */
+  private static RoutingDataSource.Replica createReplica(String hostAndPort, boolean primary) {
+    final String host = hostAndPort.indexOf(':') < 0 ? hostAndPort + ":" + PORT : hostAndPort;
+
+    // initialize the connection pool
+    final BasicDataSource pool = new BasicDataSource();
     String url =
         String.format(
-            "jdbc:mysql://%s:%s/%s?readOnly=true&serverTimezone=UTC", HOST_NAME, PORT, Constants.DATABASE);
-    dataSource.setUrl(url);
-    dataSource.setUsername(USERNAME);
-    dataSource.setPassword(PASSWORD);
+            "jdbc:mysql://%s/%s?readOnly=true&serverTimezone=UTC", host, Constants.DATABASE);
+    if (Constants.STATEMENT_CACHE_SIZE > 0) {
+      // prepare once per connection on the server, then send only the parameters
+      url += "&useServerPrepStmts=true";
+      pool.setPoolPreparedStatements(true);
+      pool.setMaxOpenPreparedStatements(Constants.STATEMENT_CACHE_SIZE);
+    }
+    pool.setUrl(url);
+    pool.setUsername(USERNAME);
+    pool.setPassword(PASSWORD);
 
     // connection pool config
-    dataSource.setInitialSize(Constants.INITIAL_POOL_SIZE);
-    dataSource.setMaxTotal(Constants.MAX_TOTAL_CONNECTIONS);
-    dataSource.setMaxIdle(Constants.MAX_IDLE_CONNECTIONS);
-    dataSource.setMinIdle(Constants.MIN_IDLE_CONNECTIONS);
-    dataSource.setMaxWaitMillis(Constants.MAX_WAIT_MILLIS);
+    if (primary) {
+      pool.setInitialSize(0);
+      pool.setMaxTotal(Constants.MAX_PRIMARY_CONNECTIONS);
+      pool.setMaxIdle(Constants.MAX_PRIMARY_CONNECTIONS);
+      pool.setMinIdle(0);
+    } else {
+      pool.setInitialSize(Constants.INITIAL_POOL_SIZE);
+      pool.setMaxTotal(Constants.MAX_TOTAL_CONNECTIONS);
+      pool.setMaxIdle(Constants.MAX_IDLE_CONNECTIONS);
+      pool.setMinIdle(Constants.MIN_IDLE_CONNECTIONS);
+    }
+    pool.setMaxWaitMillis(Constants.MAX_WAIT_MILLIS);
+    return new RoutingDataSource.Replica(host, pool);
   }
 
-  public static BasicDataSource getDataSource() {
+  public static RoutingDataSource getDataSource() {
     return dataSource;
   }
 
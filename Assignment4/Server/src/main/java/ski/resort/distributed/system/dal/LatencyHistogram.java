@@ -0,0 +1,75 @@
+package ski.resort.distributed.system.dal;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of latencies in microseconds. Buckets are log-linear: exact below 4 µs,
+ * then four per power of two, so a percentile is reported within 25% of the true value. It covers
+ * up to 2^40 µs (about 12 days) in 160 counters.
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BUCKET_BITS = 2;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int MAX_EXPONENT = 40;
+  private static final int NUM_BUCKETS = SUB_BUCKETS * (MAX_EXPONENT - SUB_BUCKET_BITS + 2);
+
+  private final AtomicLongArray counts = new AtomicLongArray(NUM_BUCKETS);
+  private final LongAdder count = new LongAdder();
+  private final LongAdder sumMicros = new LongAdder();
+
+  public void record(long micros) {
+    final long value = Math.max(0, micros);
+    counts.incrementAndGet(bucketOf(value));
+    count.increment();
+    sumMicros.add(value);
+  }
+
+  /** Records the time elapsed since {@code startNanos}, a {@link System#nanoTime()} reading. */
+  public void recordSince(long startNanos) {
+    record((System.nanoTime() - startNanos) / 1000);
+  }
+
+  public long getCount() {
+    return count.sum();
+  }
+
+  public double getMeanMicros() {
+    final long n = count.sum();
+    return n == 0 ? 0 : (double) sumMicros.sum() / n;
+  }
+
+  /** Returns the upper bound of the bucket holding the given percentile, or 0 if empty. */
+  public long getPercentileMicros(double percentile) {
+    long total = 0;
+    final long[] snapshot = new long[NUM_BUCKETS];
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      snapshot[i] = counts.get(i);
+      total += snapshot[i];
+    }
+    if (total == 0) return 0;
+    final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * total));
+    long seen = 0;
+    for (int i = 0; i < NUM_BUCKETS; i++) {
+      seen += snapshot[i];
+      if (seen >= rank) return upperBoundOf(i);
+    }
+    return upperBoundOf(NUM_BUCKETS - 1);
+  }
+
+  static int bucketOf(long micros) {
+    if (micros < SUB_BUCKETS) return (int) micros;
+    final int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+    final int shift = exponent - SUB_BUCKET_BITS;
+    final int subBucket = (int) Math.min((micros >>> shift) - SUB_BUCKETS, SUB_BUCKETS - 1);
+    return SUB_BUCKETS * (shift + 1) + subBucket;
+  }
+
+  static long upperBoundOf(int bucket) {
+    if (bucket < SUB_BUCKETS) return bucket;
+    final int shift = bucket / SUB_BUCKETS - 1;
+    final long subBucket = bucket % SUB_BUCKETS;
+    return ((SUB_BUCKETS + subBucket + 1) << shift) - 1;
+  }
+}
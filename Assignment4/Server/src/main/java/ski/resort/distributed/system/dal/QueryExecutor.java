@@ -0,0 +1,182 @@
+package ski.resort.distributed.system.dal;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the DAOs' SELECTs: borrows a pooled connection from the replica {@link RoutingDataSource}
+ * picks, prepares the statement, binds its int parameters, maps the rows and closes everything in
+ * reverse order. Closing the statement before the connection hands it back to the connection's
+ * statement pool (see {@link DBCPConnectionPool}), so the next call on that connection reuses the
+ * server-side prepared statement instead of preparing it again.
+ *
+ * <p>Each {@link Query} keeps a {@link LatencyHistogram} of its time on the connection, from
+ * prepare to the last row, and all queries share one of the time spent waiting for a connection.
+ */
+public class QueryExecutor {
+
+  private static final QueryExecutor INSTANCE = new QueryExecutor();
+
+  private final Map<String, Query> queries = Collections.synchronizedMap(new TreeMap<>());
+  private final LatencyHistogram connectionWait = new LatencyHistogram();
+
+  private QueryExecutor() {}
+
+  public static QueryExecutor getInstance() {
+    return INSTANCE;
+  }
+
+  /** Maps the current row to an int, without boxing. */
+  @FunctionalInterface
+  public interface IntRowMapper {
+    int mapRow(ResultSet resultSet) throws SQLException;
+  }
+
+  /** Maps the current row to an object. */
+  @FunctionalInterface
+  public interface RowMapper<T> {
+    T mapRow(ResultSet resultSet) throws SQLException;
+  }
+
+  /** Handles the current row, e.g. by storing its columns into arrays. */
+  @FunctionalInterface
+  public interface RowHandler {
+    void handleRow(ResultSet resultSet) throws SQLException;
+  }
+
+  /** A named SQL statement and its latencies. */
+  public static class Query {
+    private final String name;
+    private final String sql;
+    private final boolean fresh;
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private Query(String name, String sql, boolean fresh) {
+      this.name = name;
+      this.sql = sql;
+      this.fresh = fresh;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getSql() {
+      return sql;
+    }
+
+    public LatencyHistogram getLatency() {
+      return latency;
+    }
+  }
+
+  /** Registers a query under a name, for its latencies in {@code GET /metrics}. */
+  public Query query(String name, String sql) {
+    return query(name, sql, false);
+  }
+
+  /**
+   * Registers a query; with {@code fresh}, it reads from the primary rather than a replica, for
+   * reads that must see the latest writes.
+   */
+  public Query query(String name, String sql, boolean fresh) {
+    final Query query = new Query(name, sql, fresh);
+    if (queries.putIfAbsent(name, query) != null) {
+      throw new IllegalArgumentException("Duplicate query name: " + name);
+    }
+    return query;
+  }
+
+  /** Appends {@code count} comma-separated placeholders and a ')' to {@code sqlPrefix}. */
+  public static String withPlaceholders(String sqlPrefix, int count) {
+    return sqlPrefix + String.join(",", Collections.nCopies(count, "?")) + ")";
+  }
+
+  /** Returns the first row mapped to an int, or {@code absent} if there is no row. */
+  public int queryForInt(Query query, IntRowMapper mapper, int absent, int... params)
+      throws SQLException {
+    return queryForInt(query, query.sql, mapper, absent, params);
+  }
+
+  /** As {@link #queryForInt(Query, IntRowMapper, int, int...)}, with SQL built for this call. */
+  public int queryForInt(Query query, String sql, IntRowMapper mapper, int absent, int... params)
+      throws SQLException {
+    final long borrowStart = System.nanoTime();
+    try (RoutingDataSource.Lease lease = DBCPConnectionPool.getDataSource().lease(query.fresh);
+        Connection conn = lease.getConnection()) {
+      final long start = System.nanoTime();
+      connectionWait.recordSince(borrowStart);
+      try (PreparedStatement ps = prepare(conn, sql, params);
+          ResultSet resultSet = ps.executeQuery()) {
+        return resultSet.next() ? mapper.mapRow(resultSet) : absent;
+      } finally {
+        query.latency.recordSince(start);
+      }
+    }
+  }
+
+  /** Returns every row, mapped. */
+  public <T> List<T> queryForList(Query query, RowMapper<T> mapper, int... params)
+      throws SQLException {
+    return queryForList(query, query.sql, mapper, params);
+  }
+
+  /** As {@link #queryForList(Query, RowMapper, int...)}, with SQL built for this call. */
+  public <T> List<T> queryForList(Query query, String sql, RowMapper<T> mapper, int... params)
+      throws SQLException {
+    final List<T> rows = new ArrayList<>();
+    queryForEach(query, sql, resultSet -> rows.add(mapper.mapRow(resultSet)), params);
+    return rows;
+  }
+
+  /** Passes every row to {@code handler}, as it is read, with SQL built for this call. */
+  public void queryForEach(Query query, String sql, RowHandler handler, int... params)
+      throws SQLException {
+    final long borrowStart = System.nanoTime();
+    try (RoutingDataSource.Lease lease = DBCPConnectionPool.getDataSource().lease(query.fresh);
+        Connection conn = lease.getConnection()) {
+      final long start = System.nanoTime();
+      connectionWait.recordSince(borrowStart);
+      try (PreparedStatement ps = prepare(conn, sql, params);
+          ResultSet resultSet = ps.executeQuery()) {
+        while (resultSet.next()) {
+          handler.handleRow(resultSet);
+        }
+      } finally {
+        query.latency.recordSince(start);
+      }
+    }
+  }
+
+  /** The registered queries by name. */
+  public Map<String, Query> getQueries() {
+    synchronized (queries) {
+      return new TreeMap<>(queries);
+    }
+  }
+
+  public LatencyHistogram getConnectionWait() {
+    return connectionWait;
+  }
+
+  private static PreparedStatement prepare(Connection conn, String sql, int... params)
+      throws SQLException {
+    final PreparedStatement ps = conn.prepareStatement(sql);
+    try {
+      for (int i = 0; i < params.length; i++) {
+        ps.setInt(i + 1, params[i]);
+      }
+      return ps;
+    } catch (SQLException e) {
+      ps.close();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,121 @@
+package ski.resort.distributed.system.dal;
+
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static ski.resort.distributed.system.utils.Constants.TABLE;
+import static ski.resort.distributed.system.utils.Constants.TABLE_E;
+import static ski.resort.distributed.system.utils.Constants.TABLE_F;
+
+/**
+ * Reads the snapshot the read model starts from: the verticals the Consumer keeps in {@code
+ * skierDayVertical} and {@code skierSeasonVertical}, and the request IDs of the latest rides in
+ * {@code liftRides}. All three are read in one transaction with a consistent snapshot, so a ride is
+ * either in the verticals and among the request IDs, or in neither. The Consumer writes a ride and
+ * its verticals in one transaction, which keeps that true.
+ *
+ * <p>The queries are registered as fresh, so they go to the primary when one is configured: a
+ * lagging replica would leave out rides that the stream replay after the snapshot no longer covers.
+ * Rows are streamed rather than buffered, since the tables hold a row per skier day.
+ */
+public class ReadModelSnapshotDao extends AbstractDao {
+
+  private static final String START_SNAPSHOT_QUERY =
+      "START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY";
+  private static final QueryExecutor.Query REQUEST_IDS_QUERY =
+      executor.query(
+          "snapshotRequestIDs",
+          String.format(
+              "SELECT requestID FROM %s WHERE requestID IS NOT NULL ORDER BY id DESC LIMIT ?",
+              TABLE),
+          true);
+  private static final QueryExecutor.Query SKIER_DAYS_QUERY =
+      executor.query(
+          "snapshotSkierDays",
+          String.format(
+              "SELECT resortID, seasonID, dayID, skierID, rides, totalVertical FROM %s", TABLE_E),
+          true);
+  private static final QueryExecutor.Query SKIER_SEASONS_QUERY =
+      executor.query(
+          "snapshotSkierSeasons",
+          String.format(
+              "SELECT skierID, resortID, seasonID, rides, totalVertical FROM %s", TABLE_F),
+          true);
+
+  /** Receives the snapshot row by row. */
+  public interface Handler {
+    /** The high 64 bits of a recent ride's request ID, oldest first. */
+    void requestID(long requestIDHigh);
+
+    void skierDay(int resortID, int seasonID, int dayID, int skierID, int rides, int totalVertical);
+
+    void skierSeason(int skierID, int resortID, int seasonID, int rides, int totalVertical);
+  }
+
+  public ReadModelSnapshotDao() {}
+
+  /** Passes the snapshot to {@code handler}, with the request IDs of at most {@code maxRides}. */
+  public void load(int maxRides, Handler handler) throws SQLException {
+    try (RoutingDataSource.Lease lease = DBCPConnectionPool.getDataSource().lease(true);
+        Connection conn = lease.getConnection()) {
+      conn.setAutoCommit(false);
+      try {
+        try (Statement stmt = conn.createStatement()) {
+          stmt.execute(START_SNAPSHOT_QUERY);
+        }
+
+        // newest first, for the LIMIT; handed over oldest first, in the order they were applied
+        final long[] requestIDs = new long[maxRides];
+        final int[] count = {0};
+        forEach(
+            conn,
+            REQUEST_IDS_QUERY,
+            rs -> requestIDs[count[0]++] = ByteBuffer.wrap(rs.getBytes(1)).getLong(),
+            maxRides);
+        for (int i = count[0] - 1; i >= 0; i--) handler.requestID(requestIDs[i]);
+
+        forEach(
+            conn,
+            SKIER_DAYS_QUERY,
+            rs ->
+                handler.skierDay(
+                    rs.getInt(1),
+                    rs.getInt(2),
+                    rs.getInt(3),
+                    rs.getInt(4),
+                    rs.getInt(5),
+                    rs.getInt(6)));
+        forEach(
+            conn,
+            SKIER_SEASONS_QUERY,
+            rs ->
+                handler.skierSeason(
+                    rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4), rs.getInt(5)));
+      } finally {
+        conn.rollback(); // read only; ends the snapshot
+        conn.setAutoCommit(true);
+      }
+    }
+  }
+
+  private static void forEach(
+      Connection conn, QueryExecutor.Query query, QueryExecutor.RowHandler handler, int... params)
+      throws SQLException {
+    final long start = System.nanoTime();
+    try (PreparedStatement ps =
+        conn.prepareStatement(
+            query.getSql(), ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+      ps.setFetchSize(Integer.MIN_VALUE); // Connector/J streams the rows one by one
+      for (int i = 0; i < params.length; i++) ps.setInt(i + 1, params[i]);
+      try (ResultSet resultSet = ps.executeQuery()) {
+        while (resultSet.next()) handler.handleRow(resultSet);
+      }
+    } finally {
+      query.getLatency().recordSince(start);
+    }
+  }
+}
@@ -0,0 +1,86 @@
+package ski.resort.distributed.system.dal;
+
+import org.roaringbitmap.FastAggregation;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static ski.resort.distributed.system.utils.Constants.TABLE_C;
+
+/**
+ * Reads the skiers of resort days as Roaring bitmaps, the sets the Consumer keeps in {@code
+ * resortSkierSets} next to the counts in {@code resortSkiersCount}. Besides the skiers of one day,
+ * it answers questions across days, such as how many skiers came on both day 1 and day 2, by
+ * intersecting or uniting the days' sets in memory.
+ */
+public class ResortSkierSetsDao extends AbstractDao {
+
+  private static final String SELECT_QUERY_PREFIX =
+      String.format(
+          "SELECT skiers FROM %s WHERE resortID = ? AND seasonID = ? AND dayID IN (", TABLE_C);
+  private static final QueryExecutor.Query SELECT_QUERY =
+      executor.query("resortDaySkierSets", QueryExecutor.withPlaceholders(SELECT_QUERY_PREFIX, 1));
+
+  public ResortSkierSetsDao() {}
+
+  /** Returns the skiers of a resort day; empty if there are none or the query failed. */
+  public RoaringBitmap getSkiers(int resortID, int seasonID, int dayID) {
+    final List<RoaringBitmap> sets = querySkierSets(resortID, seasonID, dayID);
+    return sets.isEmpty() ? new RoaringBitmap() : sets.get(0);
+  }
+
+  public int getUniqueSkiers(int resortID, int seasonID, int dayID) {
+    return getSkiers(resortID, seasonID, dayID).getCardinality();
+  }
+
+  /** Counts the skiers who skied at the resort on every one of the days. */
+  public int countSkiersOnAllDays(int resortID, int seasonID, int... dayIDs) {
+    final List<RoaringBitmap> sets = querySkierSets(resortID, seasonID, dayIDs);
+    // a day without a set has no skiers, and neither has the intersection
+    if (sets.isEmpty() || sets.size() < Arrays.stream(dayIDs).distinct().count()) return 0;
+    return FastAggregation.and(sets.iterator()).getCardinality();
+  }
+
+  /** Counts the skiers who skied at the resort on at least one of the days. */
+  public int countSkiersOnAnyDay(int resortID, int seasonID, int... dayIDs) {
+    final List<RoaringBitmap> sets = querySkierSets(resortID, seasonID, dayIDs);
+    return FastAggregation.or(sets.iterator()).getCardinality();
+  }
+
+  /** Runs the query; returns the sets of the days that have one, or none if it failed. */
+  private List<RoaringBitmap> querySkierSets(int resortID, int seasonID, int... dayIDs) {
+    if (dayIDs.length == 0) return Collections.emptyList();
+    final int[] params = new int[2 + dayIDs.length];
+    params[0] = resortID;
+    params[1] = seasonID;
+    System.arraycopy(dayIDs, 0, params, 2, dayIDs.length);
+
+    try {
+      // each IN-list length is its own statement, pooled like the others
+      return executor.queryForList(
+          SELECT_QUERY,
+          QueryExecutor.withPlaceholders(SELECT_QUERY_PREFIX, dayIDs.length),
+          ResortSkierSetsDao::toSkierSet,
+          params);
+    } catch (SQLException e) {
+      System.err.println("!!! Error fetching skier sets: " + e.getMessage());
+      return Collections.emptyList();
+    }
+  }
+
+  private static RoaringBitmap toSkierSet(ResultSet resultSet) throws SQLException {
+    final RoaringBitmap set = new RoaringBitmap();
+    try {
+      set.deserialize(ByteBuffer.wrap(resultSet.getBytes(1)));
+    } catch (IOException e) {
+      throw new SQLException("Corrupt skier set", e);
+    }
+    return set;
+  }
+}
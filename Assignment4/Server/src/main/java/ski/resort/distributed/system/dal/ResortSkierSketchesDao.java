@@ -0,0 +1,65 @@
+package ski.resort.distributed.system.dal;
+
+import ski.resort.distributed.system.sketch.HyperLogLog;
+
+import java.sql.SQLException;
+import java.util.List;
+
+import static ski.resort.distributed.system.utils.Constants.TABLE_D;
+
+/**
+ * Estimates the unique skiers of a resort day from the HyperLogLog sketches the Consumers keep in
+ * {@code resortSkierSketches}, one per Consumer. The sketches are merged on read, reduced to the
+ * lowest precision among them if the Consumers differ, and the estimate is cached like the
+ * verticals, for {@code VERTICAL_CACHE_TTL_MILLIS}.
+ */
+public class ResortSkierSketchesDao extends AbstractDao {
+
+  private static final VerticalCache CACHE = VerticalCache.fromConstants();
+
+  private static final QueryExecutor.Query SELECT_QUERY =
+      executor.query(
+          "resortDaySketches",
+          String.format(
+              "SELECT registers FROM %s WHERE resortID = ? AND seasonID = ? AND dayID = ?",
+              TABLE_D));
+
+  public ResortSkierSketchesDao() {}
+
+  public static VerticalCache getCache() {
+    return CACHE;
+  }
+
+  public int getUniqueSkiers(int resortID, int seasonID, int dayID) {
+    // skier 0 leaves just the resort day in the key
+    final Integer uniqueSkiers =
+        CACHE.get(
+            VerticalCache.packSkierDay(resortID, seasonID, dayID, 0),
+            key -> queryUniqueSkiers(resortID, seasonID, dayID));
+    return uniqueSkiers == null ? 0 : uniqueSkiers;
+  }
+
+  /** Runs the query and merges the sketches; returns null if it failed, so it is not cached. */
+  private Integer queryUniqueSkiers(int resortID, int seasonID, int dayID) {
+    final List<HyperLogLog> sketches;
+    try {
+      sketches =
+          executor.queryForList(
+              SELECT_QUERY,
+              rs -> HyperLogLog.fromBytes(rs.getBytes(1)),
+              resortID,
+              seasonID,
+              dayID);
+    } catch (SQLException | IllegalArgumentException e) {
+      System.err.println("!!! Error fetching skier sketches: " + e.getMessage());
+      return null;
+    }
+
+    if (sketches.isEmpty()) return 0;
+    int precision = HyperLogLog.MAX_PRECISION;
+    for (HyperLogLog sketch : sketches) precision = Math.min(precision, sketch.getPrecision());
+    final HyperLogLog merged = new HyperLogLog(precision);
+    for (HyperLogLog sketch : sketches) merged.merge(sketch.reduce(precision));
+    return (int) merged.estimate();
+  }
+}
@@ -1,47 +1,43 @@
 package ski.resort.distributed.system.dal;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
 import static ski.resort.distributed.system.utils.Constants.TABLE_B;
 
 public class ResortSkiersDayDao extends AbstractDao {
 
-  private static final String COL_LABEL_UNIQUE_SKIERS = "uniqueSkiers";
+  private static final SingleFlight<Integer> SINGLE_FLIGHT = SingleFlight.fromConstants();
 
-  private static final String SELECT_QUERY =
-      String.format(
-          "SELECT uniqueSkiers FROM %s WHERE resortId = ? AND seasonId = ? AND dayId = ?",
-          TABLE_B);
+  private static final QueryExecutor.Query SELECT_QUERY =
+      executor.query(
+          "resortDaySkiers",
+          String.format(
+              "SELECT uniqueSkiers FROM %s WHERE resortId = ? AND seasonId = ? AND dayId = ?",
+              TABLE_B));
 
   public ResortSkiersDayDao() {}
 
+  public static SingleFlight<Integer> getSingleFlight() {
+    return SINGLE_FLIGHT;
+  }
+
   public int getUniqueSkiers(int resortID, int seasonID, int dayID) {
-    Connection conn = null;
-    PreparedStatement preparedStatement = null;
-    ResultSet resultSet = null;
-    int uniqueSkiers = 0;
+    // skier 0 leaves just the resort day in the key
+    final long key = VerticalCache.packSkierDay(resortID, seasonID, dayID, 0);
+    final Integer uniqueSkiers =
+        key == VerticalCache.NO_KEY
+            ? queryUniqueSkiers(resortID, seasonID, dayID)
+            : SINGLE_FLIGHT.get(key, k -> queryUniqueSkiers(resortID, seasonID, dayID));
+    return uniqueSkiers == null ? 0 : uniqueSkiers;
+  }
 
+  /** Runs the query; returns null if it failed, so the failure is not shared past its flight. */
+  private Integer queryUniqueSkiers(int resortID, int seasonID, int dayID) {
     try {
-      // use JSONObject methods to get the metadata
-      conn = dataSource.getConnection();
-      preparedStatement = conn.prepareStatement(SELECT_QUERY);
-      preparedStatement.setInt(1, resortID);
-      preparedStatement.setInt(2, seasonID);
-      preparedStatement.setInt(3, dayID);
-
-      // execute insert SQL statement
-      resultSet = preparedStatement.executeQuery();
-      if (resultSet.next()) {
-        uniqueSkiers = resultSet.getInt(COL_LABEL_UNIQUE_SKIERS);
-      }
+      return executor.queryForInt(SELECT_QUERY, rs -> rs.getInt(1), 0, resortID, seasonID, dayID);
     } catch (SQLException e) {
       System.err.println("Error fetching unique skiers: " + e.getMessage());
+      return null;
     }
-
-    closeQuietly(conn, preparedStatement, resultSet);
-    return uniqueSkiers;
   }
 }
@@ -0,0 +1,259 @@
+package ski.resort.distributed.system.dal;
+
+import org.apache.commons.dbcp2.BasicDataSource;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLSyntaxErrorException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Spreads the GETs' reads over several MySQL read replicas, each with a DBCP pool of its own. A
+ * read goes to the healthy replica with the fewest queries outstanding, so a replica that slows
+ * down is sent less until it catches up, and read capacity grows by adding replicas.
+ *
+ * <p>A health check connects to each replica on its own connection, outside the pools, so a busy
+ * pool is not mistaken for a dead replica. A replica that cannot be reached, whose replication has
+ * stopped, or that lags the primary by more than the allowed seconds is ejected until a later
+ * check passes. A user without the {@code REPLICATION CLIENT} privilege may not read the replica
+ * status; such a replica is kept as long as it answers, its lag unknown. Reads that must see the
+ * latest writes, such as the read model's snapshot, can ask for the primary instead. With every
+ * replica ejected, reads go to the primary, or to all replicas if there is none.
+ */
+public class RoutingDataSource implements AutoCloseable {
+
+  /** {@link Replica#getLagSeconds} of a replica whose status the user may not read. */
+  public static final long LAG_UNKNOWN = -2;
+
+  private static final String REPLICA_STATUS_QUERY = "SHOW REPLICA STATUS"; // MySQL 8.0.22+
+  private static final String LEGACY_REPLICA_STATUS_QUERY = "SHOW SLAVE STATUS";
+  private static final int ER_ACCESS_DENIED = 1045;
+  private static final int ER_SPECIFIC_ACCESS_DENIED = 1227; // e.g. REPLICATION CLIENT missing
+  private static final int HEALTH_CHECK_TIMEOUT_SECONDS = 2;
+  private static final String HEALTH_CHECK_URL_PARAMS =
+      "&connectTimeout=" + HEALTH_CHECK_TIMEOUT_SECONDS * 1000;
+
+  private final List<Replica> replicas;
+  private final Replica primary; // null when fresh reads stay on the replicas
+  private final long maxLagSeconds;
+  private final AtomicInteger nextStart = new AtomicInteger(); // rotates ties between replicas
+  private final ScheduledExecutorService healthChecker;
+
+  public RoutingDataSource(
+      List<Replica> replicas, Replica primary, long healthCheckMillis, long maxLagSeconds) {
+    if (replicas.isEmpty()) throw new IllegalArgumentException("No read replicas");
+    this.replicas = List.copyOf(replicas);
+    this.primary = primary;
+    this.maxLagSeconds = maxLagSeconds;
+    this.healthChecker =
+        Executors.newSingleThreadScheduledExecutor(
+            r -> {
+              final Thread thread = new Thread(r, "replica-health-check");
+              thread.setDaemon(true);
+              return thread;
+            });
+    healthChecker.scheduleWithFixedDelay(
+        this::checkHealth, 0, healthCheckMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Picks where a read goes and counts it as outstanding until the lease is closed. With {@code
+   * fresh}, the read goes to the primary, if there is one.
+   */
+  public Lease lease(boolean fresh) {
+    final Replica target = fresh && primary != null ? primary : leastOutstanding();
+    target.outstanding.incrementAndGet();
+    target.reads.increment();
+    return new Lease(target);
+  }
+
+  public List<Replica> getReplicas() {
+    return replicas;
+  }
+
+  /** The primary, or null if none is configured. */
+  public Replica getPrimary() {
+    return primary;
+  }
+
+  @Override
+  public void close() throws SQLException {
+    healthChecker.shutdownNow();
+    for (Replica replica : replicas) replica.pool.close();
+    if (primary != null) primary.pool.close();
+  }
+
+  private Replica leastOutstanding() {
+    final Replica healthy = leastOutstanding(true);
+    if (healthy != null) return healthy;
+    return primary != null ? primary : leastOutstanding(false);
+  }
+
+  private Replica leastOutstanding(boolean healthyOnly) {
+    final int n = replicas.size();
+    final int start = Math.floorMod(nextStart.getAndIncrement(), n);
+    Replica best = null;
+    int bestOutstanding = Integer.MAX_VALUE;
+    for (int i = 0; i < n; i++) {
+      final Replica replica = replicas.get((start + i) % n);
+      if (healthyOnly && !replica.healthy) continue;
+      final int outstanding = replica.outstanding.get();
+      if (outstanding < bestOutstanding) {
+        best = replica;
+        bestOutstanding = outstanding;
+      }
+    }
+    return best;
+  }
+
+  private void checkHealth() {
+    for (Replica replica : replicas) {
+      String failure = null;
+      try {
+        final long lagSeconds = replicationLag(replica);
+        if (lagSeconds == LAG_UNKNOWN && replica.lagSeconds != LAG_UNKNOWN) {
+          System.err.println(
+              "!!! No lag information for replica "
+                  + replica.name
+                  + "; the user needs the REPLICATION CLIENT privilege.");
+        }
+        replica.lagSeconds = lagSeconds;
+        // an unknown lag keeps a replica that answers, rather than eject all for a privilege
+        if (lagSeconds == -1) {
+          failure = "replication stopped";
+        } else if (lagSeconds > maxLagSeconds) {
+          failure = "lagging " + lagSeconds + " s";
+        }
+      } catch (SQLException | RuntimeException e) {
+        replica.lagSeconds = -1;
+        failure = e.getMessage();
+      }
+      // logged on changes only, not on every check while a replica stays down
+      final boolean healthy = failure == null;
+      if (healthy == replica.healthy) continue;
+      replica.healthy = healthy;
+      if (healthy) {
+        System.out.println("Readmitted replica " + replica.name + ".");
+      } else {
+        replica.ejections.increment();
+        System.err.println("!!! Ejected replica " + replica.name + ": " + failure);
+      }
+    }
+  }
+
+  /**
+   * Returns the seconds the replica is behind, 0 if it is no replica, -1 if it has stopped, or
+   * {@link #LAG_UNKNOWN} if the user may not read its status.
+   */
+  private static long replicationLag(Replica replica) throws SQLException {
+    try (Connection conn =
+            DriverManager.getConnection(
+                replica.pool.getUrl() + HEALTH_CHECK_URL_PARAMS,
+                replica.pool.getUsername(),
+                replica.pool.getPassword());
+        Statement stmt = conn.createStatement()) {
+      stmt.setQueryTimeout(HEALTH_CHECK_TIMEOUT_SECONDS);
+      ResultSet status;
+      String lagColumn = "Seconds_Behind_Source";
+      try {
+        status = stmt.executeQuery(REPLICA_STATUS_QUERY);
+      } catch (SQLSyntaxErrorException e) {
+        if (isAccessDenied(e)) return LAG_UNKNOWN; // also a 42000, but not a parse error
+        try {
+          status = stmt.executeQuery(LEGACY_REPLICA_STATUS_QUERY); // before MySQL 8.0.22
+        } catch (SQLSyntaxErrorException legacy) {
+          if (isAccessDenied(legacy)) return LAG_UNKNOWN;
+          throw legacy;
+        }
+        lagColumn = "Seconds_Behind_Master";
+      }
+      try (ResultSet resultSet = status) {
+        if (!resultSet.next()) return 0; // not replicating from anything
+        final long lag = resultSet.getLong(lagColumn);
+        return resultSet.wasNull() ? -1 : lag; // NULL while replication is stopped
+      }
+    }
+  }
+
+  private static boolean isAccessDenied(SQLException e) {
+    return e.getErrorCode() == ER_SPECIFIC_ACCESS_DENIED
+        || e.getErrorCode() == ER_ACCESS_DENIED
+        || ("42000".equals(e.getSQLState())
+            && e.getMessage() != null
+            && e.getMessage().contains("Access denied"));
+  }
+
+  /** One database the reads can go to, with its pool and counters. */
+  public static class Replica {
+    private final String name;
+    private final BasicDataSource pool;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final LongAdder reads = new LongAdder();
+    private final LongAdder ejections = new LongAdder();
+    private volatile boolean healthy = true;
+    private volatile long lagSeconds;
+
+    public Replica(String name, BasicDataSource pool) {
+      this.name = name;
+      this.pool = pool;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public boolean isHealthy() {
+      return healthy;
+    }
+
+    /**
+     * Seconds behind the primary at the last health check; -1 if stopped or unreachable, {@link
+     * #LAG_UNKNOWN} if the user may not read the replica status.
+     */
+    public long getLagSeconds() {
+      return lagSeconds;
+    }
+
+    public int getOutstanding() {
+      return outstanding.get();
+    }
+
+    public long getReads() {
+      return reads.sum();
+    }
+
+    public long getEjections() {
+      return ejections.sum();
+    }
+
+    public int getActiveConnections() {
+      return pool.getNumActive();
+    }
+  }
+
+  /** A read routed to one replica; closing it ends the read, after its connection is closed. */
+  public static class Lease implements AutoCloseable {
+    private final Replica replica;
+
+    private Lease(Replica replica) {
+      this.replica = replica;
+    }
+
+    public Connection getConnection() throws SQLException {
+      return replica.pool.getConnection();
+    }
+
+    @Override
+    public void close() {
+      replica.outstanding.decrementAndGet();
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package ski.resort.distributed.system.dal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+import static ski.resort.distributed.system.utils.Constants.SINGLE_FLIGHT_HOLD_MILLIS;
+
+/**
+ * Coalesces concurrent loads of the same key, so that a hot key costs one query and one pooled
+ * connection however many GETs ask for it at once. The first caller runs the query and the others
+ * wait for its result. A result may be held for a short window after it completes, serving callers
+ * that arrive just after the query. Failed loads, which return null, are never held.
+ *
+ * @param <V> the loaded value
+ */
+public class SingleFlight<V> {
+
+  private final ConcurrentMap<Long, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+  private final long holdMillis;
+  private final LongAdder calls = new LongAdder();
+  private final LongAdder loads = new LongAdder();
+
+  public SingleFlight(long holdMillis) {
+    this.holdMillis = holdMillis;
+  }
+
+  /** A single flight that holds results for {@code SINGLE_FLIGHT_HOLD_MILLIS}. */
+  static <V> SingleFlight<V> fromConstants() {
+    return new SingleFlight<>(SINGLE_FLIGHT_HOLD_MILLIS);
+  }
+
+  /** Returns the in-flight or held result for {@code key}, or loads it if there is none. */
+  public V get(long key, LongFunction<V> loader) {
+    calls.increment();
+    final CompletableFuture<V> flight = new CompletableFuture<>();
+    final CompletableFuture<V> leader = flights.putIfAbsent(key, flight);
+    if (leader != null) return join(leader);
+
+    loads.increment();
+    final V value;
+    try {
+      value = loader.apply(key);
+    } catch (RuntimeException | Error e) {
+      flights.remove(key, flight);
+      flight.completeExceptionally(e);
+      throw e;
+    }
+    flight.complete(value);
+    if (value == null || holdMillis <= 0) {
+      flights.remove(key, flight);
+    } else {
+      CompletableFuture.runAsync(
+          () -> flights.remove(key, flight),
+          CompletableFuture.delayedExecutor(holdMillis, TimeUnit.MILLISECONDS));
+    }
+    return value;
+  }
+
+  /** Calls answered by another caller's query instead of their own. */
+  public long getCollapsed() {
+    final long loaded = loads.sum(); // read first, so that it never exceeds the calls
+    return calls.sum() - loaded;
+  }
+
+  public long getCalls() {
+    return calls.sum();
+  }
+
+  public long getLoads() {
+    return loads.sum();
+  }
+
+  public int getInFlight() {
+    return flights.size();
+  }
+
+  private static <V> V join(CompletableFuture<V> flight) {
+    try {
+      return flight.join();
+    } catch (CompletionException e) {
+      // the leader's own exception, as if this caller had run the query
+      if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+      if (e.getCause() instanceof Error) throw (Error) e.getCause();
+      throw e;
+    }
+  }
+}
@@ -1,48 +1,124 @@
 package ski.resort.distributed.system.dal;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 
-import static ski.resort.distributed.system.utils.Constants.TABLE;
+import static ski.resort.distributed.system.utils.Constants.TABLE_E;
 
+/**
+ * Reads a skier's total vertical of one day from {@code skierDayVertical}, which the Consumer keeps
+ * summed as rides arrive, so a GET is a primary-key lookup however many rides there are. Cached
+ * totals are never invalidated, since the Server does not see the Consumer's writes; they expire
+ * after {@code VERTICAL_CACHE_TTL_MILLIS}, the most a GET lags new rides.
+ */
 public class SkierDayVerticalDao extends AbstractDao {
 
-  private static final String COL_LABEL_TOTAL_VERTICAL = "totalVertical";
-  private static final String SELECT_QUERY =
+  private static final VerticalCache CACHE = VerticalCache.fromConstants();
+
+  private static final QueryExecutor.Query SELECT_QUERY =
+      executor.query(
+          "skierDayVertical",
+          String.format(
+              "SELECT totalVertical FROM %s "
+                  + "WHERE resortID = ? AND seasonID = ? AND dayID = ? AND skierID = ?",
+              TABLE_E));
+  private static final String SELECT_BATCH_QUERY_PREFIX =
       String.format(
-          "SELECT SUM(liftID) * 10 AS totalVertical  FROM %s "
-              + "WHERE resortID = ? AND seasonID = ? AND dayID = ? AND skierID = ?",
-          TABLE);
+          "SELECT skierID, totalVertical FROM %s "
+              + "WHERE resortID = ? AND seasonID = ? AND dayID = ? AND skierID IN (",
+          TABLE_E);
+  private static final QueryExecutor.Query SELECT_BATCH_QUERY =
+      executor.query(
+          "skierDayVerticalBatch",
+          QueryExecutor.withPlaceholders(SELECT_BATCH_QUERY_PREFIX, 1));
+  private static final int MIN_BATCH_PLACEHOLDERS = 8;
 
   public SkierDayVerticalDao() {}
 
+  public static VerticalCache getCache() {
+    return CACHE;
+  }
+
   public int getTotalVertical(int resortID, int seasonID, int dayID, int skierID) {
-    Connection conn = null;
-    PreparedStatement preparedStatement = null;
-    ResultSet resultSet = null;
-    int totalVertical = 0;
+    final Integer totalVertical =
+        CACHE.get(
+            VerticalCache.packSkierDay(resortID, seasonID, dayID, skierID),
+            key -> queryTotalVertical(resortID, seasonID, dayID, skierID));
+    return totalVertical == null ? 0 : totalVertical;
+  }
 
-    try {
-      // use JSONObject methods to get the metadata
-      conn = dataSource.getConnection();
-      preparedStatement = conn.prepareStatement(SELECT_QUERY);
-      preparedStatement.setInt(1, resortID);
-      preparedStatement.setInt(2, seasonID);
-      preparedStatement.setInt(3, dayID);
-      preparedStatement.setInt(4, skierID);
-
-      // execute insert SQL statement
-      resultSet = preparedStatement.executeQuery();
-      if (resultSet.next()) {
-        totalVertical = resultSet.getInt(COL_LABEL_TOTAL_VERTICAL);
+  /**
+   * Returns the day's total vertical of each skier, in order. Cached totals are used as they are,
+   * and the rest are read with one query and cached. Returns null if the query failed.
+   */
+  public int[] getTotalVerticals(int resortID, int seasonID, int dayID, int[] skierIDs) {
+    final int[] totalVerticals = new int[skierIDs.length];
+    final int[] missing = new int[skierIDs.length]; // positions of the skiers not cached
+    int numMissing = 0;
+    for (int i = 0; i < skierIDs.length; i++) {
+      final Integer cached =
+          CACHE.getIfPresent(VerticalCache.packSkierDay(resortID, seasonID, dayID, skierIDs[i]));
+      if (cached != null) {
+        totalVerticals[i] = cached;
+      } else {
+        missing[numMissing++] = i;
       }
+    }
+    if (numMissing == 0) return totalVerticals;
+
+    final int[] queried = new int[numMissing];
+    for (int i = 0; i < numMissing; i++) queried[i] = skierIDs[missing[i]];
+    final int[] sortedIDs = Arrays.stream(queried).sorted().distinct().toArray();
+    final int[] loaded = queryTotalVerticals(resortID, seasonID, dayID, sortedIDs);
+    if (loaded == null) return null;
+
+    for (int i = 0; i < sortedIDs.length; i++) {
+      CACHE.put(VerticalCache.packSkierDay(resortID, seasonID, dayID, sortedIDs[i]), loaded[i]);
+    }
+    for (int i = 0; i < numMissing; i++) {
+      totalVerticals[missing[i]] = loaded[Arrays.binarySearch(sortedIDs, queried[i])];
+    }
+    return totalVerticals;
+  }
+
+  /** Runs the query for distinct, sorted skiers; returns null if it failed. */
+  private int[] queryTotalVerticals(int resortID, int seasonID, int dayID, int[] sortedIDs) {
+    // the IN-list is padded to a power of two, so a few pooled statements serve every batch size
+    final int placeholders =
+        Math.max(MIN_BATCH_PLACEHOLDERS, Integer.highestOneBit(sortedIDs.length - 1) << 1);
+    final int[] params = new int[3 + placeholders];
+    params[0] = resortID;
+    params[1] = seasonID;
+    params[2] = dayID;
+    for (int i = 0; i < placeholders; i++) {
+      params[3 + i] = sortedIDs[Math.min(i, sortedIDs.length - 1)];
+    }
+
+    final int[] totalVerticals = new int[sortedIDs.length]; // skiers without rides stay at 0
+    try {
+      executor.queryForEach(
+          SELECT_BATCH_QUERY,
+          QueryExecutor.withPlaceholders(SELECT_BATCH_QUERY_PREFIX, placeholders),
+          rs -> {
+            final int i = Arrays.binarySearch(sortedIDs, rs.getInt(1));
+            if (i >= 0) totalVerticals[i] = rs.getInt(2);
+          },
+          params);
     } catch (SQLException e) {
-      System.err.println("!!! Error fetching total vertical: " + e.getMessage());
+      System.err.println("!!! Error fetching total verticals: " + e.getMessage());
+      return null;
     }
+    return totalVerticals;
+  }
 
-    closeQuietly(conn, preparedStatement, resultSet);
-    return totalVertical;
+  /** Runs the query; returns null if it failed, so the failure is not cached. */
+  private Integer queryTotalVertical(int resortID, int seasonID, int dayID, int skierID) {
+    try {
+      return executor.queryForInt(
+          SELECT_QUERY, rs -> rs.getInt(1), 0, resortID, seasonID, dayID, skierID);
+    } catch (SQLException e) {
+      System.err.println("!!! Error fetching total vertical: " + e.getMessage());
+      return null;
+    }
   }
 }
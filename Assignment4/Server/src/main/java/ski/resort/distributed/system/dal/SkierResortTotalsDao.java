@@ -1,46 +1,44 @@
 package ski.resort.distributed.system.dal;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
 
-import static ski.resort.distributed.system.utils.Constants.TABLE;
+import static ski.resort.distributed.system.utils.Constants.TABLE_F;
 
+/**
+ * Reads a skier's total vertical of one season at one resort from {@code skierSeasonVertical},
+ * which the Consumer keeps summed as rides arrive, so a GET is a primary-key lookup. Like {@link
+ * SkierDayVerticalDao}'s, its cache is only refreshed by expiry.
+ */
 public class SkierResortTotalsDao extends AbstractDao {
-  private static final String COL_LABEL_TOTAL_VERTICAL = "totalVertical";
-  private static final String SELECT_QUERY =
-      String.format(
-          "SELECT SUM(liftID) * 10 AS totalVertical  FROM %s "
-              + "WHERE skierID = ? AND resortID = ? AND seasonID = ?",
-          TABLE);
+  private static final VerticalCache CACHE = VerticalCache.fromConstants();
+  private static final QueryExecutor.Query SELECT_QUERY =
+      executor.query(
+          "skierResortVertical",
+          String.format(
+              "SELECT totalVertical FROM %s WHERE skierID = ? AND resortID = ? AND seasonID = ?",
+              TABLE_F));
 
   public SkierResortTotalsDao() {}
 
+  public static VerticalCache getCache() {
+    return CACHE;
+  }
+
   public int getTotalVertical(int skierID, int resortID, int seasonID) {
-    Connection conn = null;
-    PreparedStatement preparedStatement = null;
-    ResultSet resultSet = null;
-    int totalVertical = 0;
+    final Integer totalVertical =
+        CACHE.get(
+            VerticalCache.packSkierResort(skierID, resortID, seasonID),
+            key -> queryTotalVertical(skierID, resortID, seasonID));
+    return totalVertical == null ? 0 : totalVertical;
+  }
 
+  /** Runs the query; returns null if it failed, so the failure is not cached. */
+  private Integer queryTotalVertical(int skierID, int resortID, int seasonID) {
     try {
-      // use JSONObject methods to get the metadata
-      conn = dataSource.getConnection();
-      preparedStatement = conn.prepareStatement(SELECT_QUERY);
-      preparedStatement.setInt(1, skierID);
-      preparedStatement.setInt(2, resortID);
-      preparedStatement.setInt(3, seasonID);
-
-      // execute insert SQL statement
-      resultSet = preparedStatement.executeQuery();
-      if (resultSet.next()) {
-        totalVertical = resultSet.getInt(COL_LABEL_TOTAL_VERTICAL);
-      }
+      return executor.queryForInt(SELECT_QUERY, rs -> rs.getInt(1), 0, skierID, resortID, seasonID);
     } catch (SQLException e) {
       System.err.println("!!! Error fetching total vertical: " + e.getMessage());
+      return null;
     }
-
-    closeQuietly(conn, preparedStatement, resultSet);
-    return totalVertical;
   }
 }
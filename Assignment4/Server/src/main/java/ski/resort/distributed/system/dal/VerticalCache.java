@@ -0,0 +1,104 @@
+package ski.resort.distributed.system.dal;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.function.LongFunction;
+
+import static ski.resort.distributed.system.utils.Constants.VERTICAL_CACHE_MAX_ENTRIES;
+import static ski.resort.distributed.system.utils.Constants.VERTICAL_CACHE_TTL_MILLIS;
+
+/**
+ * A size-bounded read-through cache of total verticals, keyed by the query's ids packed into one
+ * long. Caffeine's W-TinyLFU admission keeps the frequently read skiers when a scan of one-off keys
+ * would otherwise flush them, and entries expire after a TTL so readers see new lift rides within
+ * it. Nothing invalidates an entry earlier: the rides are written by the Consumers, which the
+ * Server does not hear from. Failed loads are not cached.
+ *
+ * <p>Caffeine runs one load per key at a time and makes concurrent readers of that key wait for it.
+ * With caching disabled, a {@link SingleFlight} does the same, so a hot key still costs one query.
+ */
+public class VerticalCache {
+
+  /** Returned by {@link #pack} methods for ids that do not fit a key; such reads skip the cache. */
+  public static final long NO_KEY = -1;
+
+  private final Cache<Long, Integer> cache; // null when caching is disabled
+  private final SingleFlight<Integer> singleFlight;
+
+  public VerticalCache(long maxEntries, long ttlMillis) {
+    this.cache =
+        ttlMillis <= 0
+            ? null
+            : Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMillis(ttlMillis))
+                .recordStats()
+                .build();
+    this.singleFlight = cache == null ? SingleFlight.fromConstants() : null;
+  }
+
+  /** A cache sized and timed from {@code VERTICAL_CACHE_*}. */
+  static VerticalCache fromConstants() {
+    return new VerticalCache(VERTICAL_CACHE_MAX_ENTRIES, VERTICAL_CACHE_TTL_MILLIS);
+  }
+
+  /**
+   * Returns the cached total for {@code key}, or loads it. A loader returns null on failure; the
+   * null is passed on and not cached.
+   */
+  public Integer get(long key, LongFunction<Integer> loader) {
+    if (key == NO_KEY) return loader.apply(key);
+    if (cache == null) return singleFlight.get(key, loader);
+    return cache.get(key, loader::apply);
+  }
+
+  /** Returns the cached total for {@code key}, or null if it is not cached. */
+  public Integer getIfPresent(long key) {
+    return cache == null || key == NO_KEY ? null : cache.getIfPresent(key);
+  }
+
+  /** Caches a total loaded other than through {@link #get}, e.g. by a batch query. */
+  public void put(long key, int totalVertical) {
+    if (cache != null && key != NO_KEY) cache.put(key, totalVertical);
+  }
+
+  public boolean isEnabled() {
+    return cache != null;
+  }
+
+  public long size() {
+    return cache == null ? 0 : cache.estimatedSize();
+  }
+
+  /** Hits, misses, evictions and load times since start; all zero when disabled. */
+  public CacheStats stats() {
+    return cache == null ? CacheStats.empty() : cache.stats();
+  }
+
+  /** The single flight used while caching is disabled, or null. */
+  public SingleFlight<Integer> getSingleFlight() {
+    return singleFlight;
+  }
+
+  /** Packs {@code (resortID, seasonID, dayID, skierID)}, or returns {@link #NO_KEY}. */
+  public static long packSkierDay(int resortID, int seasonID, int dayID, int skierID) {
+    if ((resortID | seasonID | dayID | skierID) < 0
+        || resortID > 0xFF
+        || seasonID > 0x3FFF
+        || dayID > 0x3FF) {
+      return NO_KEY;
+    }
+    return (long) skierID << 32 | (long) seasonID << 18 | (long) dayID << 8 | resortID;
+  }
+
+  /** Packs {@code (skierID, resortID, seasonID)}, or returns {@link #NO_KEY}. */
+  public static long packSkierResort(int skierID, int resortID, int seasonID) {
+    if ((skierID | resortID | seasonID) < 0 || resortID > 0xFF || seasonID > 0xFFFFFF) {
+      return NO_KEY;
+    }
+    return (long) skierID << 32 | (long) seasonID << 8 | resortID;
+  }
+}
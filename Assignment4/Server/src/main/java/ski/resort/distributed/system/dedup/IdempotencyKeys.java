@@ -0,0 +1,73 @@
+package ski.resort.distributed.system.dedup;
+
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Turns the optional {@value #HEADER} of a lift-ride POST into the 128-bit request ID that travels
+ * with the ride to the Consumer. Keys are opaque to the Server, e.g. a UUID per logical ride that
+ * the client reuses across retries; they are hashed, so any printable ASCII key up to {@value
+ * #MAX_KEY_LENGTH} characters works.
+ */
+public class IdempotencyKeys {
+
+  public static final String HEADER = "Idempotency-Key";
+  public static final int MAX_KEY_LENGTH = 128;
+
+  private static final int DIGEST_BYTES = 16;
+  private static final ThreadLocal<MessageDigest> MD5 =
+      ThreadLocal.withInitial(IdempotencyKeys::newMd5);
+  private static final ThreadLocal<byte[]> DIGEST = ThreadLocal.withInitial(() -> new byte[32]);
+
+  private IdempotencyKeys() {}
+
+  /**
+   * Sets the request ID of {@code liftRide} from {@code key}, or clears it if the key is null.
+   * Returns false if the key is empty, too long, or not printable ASCII.
+   */
+  public static boolean apply(String key, LiftRide liftRide) {
+    if (key == null) {
+      liftRide.clearRequestID();
+      return true;
+    }
+    final int len = key.length();
+    if (len == 0 || len > MAX_KEY_LENGTH) return false;
+
+    final MessageDigest md5 = MD5.get();
+    for (int i = 0; i < len; i++) {
+      final char c = key.charAt(i);
+      if (c < 0x21 || c > 0x7E) {
+        md5.reset();
+        return false;
+      }
+      md5.update((byte) c);
+    }
+    final byte[] digest = DIGEST.get();
+    try {
+      md5.digest(digest, 0, digest.length);
+    } catch (DigestException e) {
+      throw new IllegalStateException(e); // the buffer always fits an MD5 digest
+    }
+    liftRide.setRequestID(getLong(digest, 0), getLong(digest, DIGEST_BYTES / 2));
+    return true;
+  }
+
+  private static long getLong(byte[] b, int pos) {
+    long v = 0;
+    for (int i = pos; i < pos + 8; i++) {
+      v = (v << 8) | (b[i] & 0xFF);
+    }
+    return v;
+  }
+
+  private static MessageDigest newMd5() {
+    try {
+      return MessageDigest.getInstance("MD5"); // a spread-out hash, not a security boundary
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every JRE ships MD5
+    }
+  }
+}
@@ -0,0 +1,115 @@
+package ski.resort.distributed.system.dedup;
+
+import java.util.Arrays;
+
+import static ski.resort.distributed.system.utils.Constants.IDEMPOTENCY_BUCKETS;
+import static ski.resort.distributed.system.utils.Constants.IDEMPOTENCY_MAX_KEYS_PER_BUCKET;
+import static ski.resort.distributed.system.utils.Constants.IDEMPOTENCY_WINDOW_SECONDS;
+
+/**
+ * The request IDs the Server has recently seen confirmed, so a client retry of a POST that already
+ * made it to RabbitMQ can be answered without publishing the ride again.
+ *
+ * <p>The window is a ring of time buckets, each an open-addressing set of 64-bit keys split into
+ * independently locked stripes. New keys go into the current bucket; a bucket is cleared when the
+ * ring comes round to it again, so a key is remembered for between {@code (buckets - 1) / buckets}
+ * of the window and the whole window. Memory is fixed: a full stripe stops remembering keys, and
+ * the retries it misses are still dropped by the Consumer's unique request ID.
+ */
+public class IdempotencyWindow {
+
+  private static final IdempotencyWindow INSTANCE =
+      new IdempotencyWindow(
+          IDEMPOTENCY_WINDOW_SECONDS * 1000L, IDEMPOTENCY_BUCKETS, IDEMPOTENCY_MAX_KEYS_PER_BUCKET);
+
+  private static final int STRIPES = 16;
+
+  private final long bucketMillis;
+  private final Bucket[] buckets;
+
+  public IdempotencyWindow(long windowMillis, int numBuckets, int maxKeysPerBucket) {
+    this.bucketMillis = Math.max(1, windowMillis / numBuckets);
+    this.buckets = new Bucket[numBuckets];
+    for (int i = 0; i < numBuckets; i++) {
+      buckets[i] = new Bucket(Math.max(1, maxKeysPerBucket / STRIPES));
+    }
+  }
+
+  /** The window shared by every POST front end of this Server. */
+  public static IdempotencyWindow getInstance() {
+    return INSTANCE;
+  }
+
+  /** Returns true if {@code key} was added within the window. */
+  public boolean contains(long key) {
+    final long now = System.currentTimeMillis() / bucketMillis;
+    for (Bucket bucket : buckets) {
+      if (bucket.epoch > now - buckets.length && bucket.stripeFor(key).contains(key)) return true;
+    }
+    return false;
+  }
+
+  public void add(long key) {
+    final long now = System.currentTimeMillis() / bucketMillis;
+    final Bucket bucket = buckets[(int) (now % buckets.length)];
+    if (bucket.epoch != now) bucket.rotate(now);
+    bucket.stripeFor(key).add(key);
+  }
+
+  private static final class Bucket {
+    final Stripe[] stripes = new Stripe[STRIPES];
+    volatile long epoch = Long.MIN_VALUE;
+
+    Bucket(int maxKeysPerStripe) {
+      for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(maxKeysPerStripe);
+    }
+
+    Stripe stripeFor(long key) {
+      return stripes[(int) (key >>> 60)]; // keys are hashes, so the top bits spread evenly
+    }
+
+    synchronized void rotate(long newEpoch) {
+      if (epoch == newEpoch) return;
+      for (Stripe stripe : stripes) stripe.clear();
+      epoch = newEpoch;
+    }
+  }
+
+  /** A fixed-capacity set of longs with linear probing; 0 marks an empty slot. */
+  private static final class Stripe {
+    final long[] slots;
+    final int maxKeys;
+    int size;
+
+    Stripe(int maxKeys) {
+      this.maxKeys = maxKeys;
+      this.slots = new long[Integer.highestOneBit(maxKeys * 2 - 1) << 1]; // load at most 1/2
+    }
+
+    synchronized boolean contains(long key) {
+      final long k = key == 0 ? 1 : key;
+      final int mask = slots.length - 1;
+      for (int i = (int) k & mask; slots[i] != 0; i = (i + 1) & mask) {
+        if (slots[i] == k) return true;
+      }
+      return false;
+    }
+
+    synchronized void add(long key) {
+      final long k = key == 0 ? 1 : key;
+      final int mask = slots.length - 1;
+      int i = (int) k & mask;
+      for (; slots[i] != 0; i = (i + 1) & mask) {
+        if (slots[i] == k) return;
+      }
+      if (size == maxKeys) return; // full: forget rather than grow
+      slots[i] = k;
+      size++;
+    }
+
+    synchronized void clear() {
+      Arrays.fill(slots, 0);
+      size = 0;
+    }
+  }
+}
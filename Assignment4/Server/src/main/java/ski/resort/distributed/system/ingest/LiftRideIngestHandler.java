@@ -0,0 +1,227 @@
+package ski.resort.distributed.system.ingest;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import ski.resort.distributed.system.codec.LiftRideJsonCodec;
+import ski.resort.distributed.system.dedup.IdempotencyKeys;
+import ski.resort.distributed.system.dedup.IdempotencyWindow;
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.mq.AdmissionController;
+import ski.resort.distributed.system.mq.LiftRidePublisher;
+import ski.resort.distributed.system.mq.QueueShards;
+import ski.resort.distributed.system.mq.RabbitMQConnectionPool;
+import ski.resort.distributed.system.utils.RouteMatch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static ski.resort.distributed.system.SkierServlet.SKIER_DAY_ROUTE;
+import static ski.resort.distributed.system.SkierServlet.rememberConfirmed;
+import static ski.resort.distributed.system.SkierServlet.requestKey;
+import static ski.resort.distributed.system.utils.Constants.CONFIRM_TIMEOUT_MILLIS;
+import static ski.resort.distributed.system.utils.Constants.MESSAGE_FORMAT;
+import static ski.resort.distributed.system.utils.Constants.RESORT_ID_RANGE_MESSAGE;
+import static ski.resort.distributed.system.utils.Constants.RETRY_AFTER_SECONDS;
+
+/**
+ * Serves {@code POST /skiers/{resortID}/seasons/{seasonID}/days/{dayID}/skiers/{skierID}} with the
+ * same statuses and messages as {@code SkierServlet.doPost}, except that it does not use the spool:
+ * with {@code SPOOL_DIR} set, a ride RabbitMQ cannot take is answered 201 by the servlet once
+ * spooled, but 503 with {@code Retry-After} here. The path is matched in place in the request URI
+ * and the body is decoded straight from the request buffer, so the only allocation on the way to
+ * RabbitMQ is the queue message itself. A connection stops reading while its request is waiting for
+ * a confirm, which keeps responses in request order.
+ */
+@ChannelHandler.Sharable
+class LiftRideIngestHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+  private static final String PATH_PREFIX = "/skiers";
+  private static final ThreadLocal<byte[]> BODY_BUFFER =
+      ThreadLocal.withInitial(() -> new byte[LiftRideJsonCodec.MAX_BODY_BYTES]);
+
+  private final LiftRideIngestServer server;
+
+  LiftRideIngestHandler(LiftRideIngestServer server) {
+    this.server = server;
+  }
+
+  @Override
+  protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest req) {
+    final boolean keepAlive = HttpUtil.isKeepAlive(req);
+    if (req.method() != HttpMethod.POST) {
+      respond(ctx, keepAlive, HttpResponseStatus.METHOD_NOT_ALLOWED, "Only POST is served here");
+      return;
+    }
+
+    // Match the path between the /skiers prefix and the query string.
+    final String uri = req.uri();
+    final int queryStart = uri.indexOf('?');
+    final int pathEnd = queryStart < 0 ? uri.length() : queryStart;
+    if (!uri.startsWith(PATH_PREFIX) || pathEnd <= PATH_PREFIX.length() + 1) {
+      respond(ctx, keepAlive, HttpResponseStatus.NOT_FOUND, "Missing parameters");
+      return;
+    }
+    final RouteMatch match = RouteMatch.current();
+    switch (SKIER_DAY_ROUTE.match(uri, PATH_PREFIX.length(), pathEnd, match)) {
+      case NO_MATCH:
+        respond(ctx, keepAlive, HttpResponseStatus.BAD_REQUEST, "Invalid URL format");
+        return;
+      case BAD_NUMBER:
+        respond(
+            ctx,
+            keepAlive,
+            HttpResponseStatus.BAD_REQUEST,
+            "Invalid number format in path parameters");
+        return;
+      case OUT_OF_RANGE:
+        respond(ctx, keepAlive, HttpResponseStatus.NOT_FOUND, RESORT_ID_RANGE_MESSAGE);
+        return;
+      default:
+        break;
+    }
+    final int skierID = match.get(3);
+
+    // Decode the body in place, or from a per-thread copy when it is off-heap.
+    final LiftRide liftRide = LiftRide.current();
+    final ByteBuf content = req.content();
+    final int len = content.readableBytes();
+    final boolean decoded;
+    if (content.hasArray()) {
+      final int off = content.arrayOffset() + content.readerIndex();
+      decoded = LiftRideJsonCodec.decode(content.array(), off, len, liftRide);
+    } else {
+      final byte[] buf = BODY_BUFFER.get();
+      content.getBytes(content.readerIndex(), buf, 0, len);
+      decoded = LiftRideJsonCodec.decode(buf, 0, len, liftRide);
+    }
+    if (!decoded) {
+      respond(ctx, keepAlive, HttpResponseStatus.BAD_REQUEST, "Invalid lift ride in request body");
+      return;
+    }
+    if (!IdempotencyKeys.apply(req.headers().get(IdempotencyKeys.HEADER), liftRide)) {
+      respond(ctx, keepAlive, HttpResponseStatus.BAD_REQUEST, "Invalid Idempotency-Key header");
+      return;
+    }
+    final long requestKey = requestKey(liftRide);
+    if (requestKey != 0 && IdempotencyWindow.getInstance().contains(requestKey)) {
+      respond(
+          ctx,
+          keepAlive,
+          HttpResponseStatus.CREATED,
+          "POST request has been successfully processed.");
+      return;
+    }
+    final byte[] message =
+        MESSAGE_FORMAT.encode(liftRide.setPath(match.get(0), match.get(1), match.get(2), skierID));
+
+    // Refuse quickly rather than queue up behind a slow broker.
+    if (!RabbitMQConnectionPool.isAvailable()) {
+      reject(ctx, keepAlive, AdmissionController.Decision.UNAVAILABLE);
+      return;
+    }
+    final AdmissionController admission = RabbitMQConnectionPool.getAdmissionController();
+    final AdmissionController.Decision decision = admission.tryAdmit();
+    if (decision != AdmissionController.Decision.ADMIT) {
+      reject(ctx, keepAlive, decision);
+      return;
+    }
+    final LiftRidePublisher publisher = server.getPublisher();
+    if (publisher == null) {
+      admission.release();
+      reject(ctx, keepAlive, AdmissionController.Decision.UNAVAILABLE);
+      return;
+    }
+
+    ctx.channel().config().setAutoRead(false); // one request in flight per connection
+    publisher
+        .publish(QueueShards.queueFor(skierID), message)
+        .orTimeout(CONFIRM_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+        .whenComplete(
+            (acked, e) -> {
+              admission.release();
+              if (e instanceof TimeoutException) {
+                respond(
+                    ctx,
+                    keepAlive,
+                    HttpResponseStatus.INTERNAL_SERVER_ERROR,
+                    "Timed out waiting for RabbitMQ ACK.");
+              } else if (e != null) {
+                e.printStackTrace();
+                respond(
+                    ctx,
+                    keepAlive,
+                    HttpResponseStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to communicate with RabbitMQ.");
+              } else if (acked) {
+                rememberConfirmed(requestKey);
+                respond(
+                    ctx,
+                    keepAlive,
+                    HttpResponseStatus.CREATED,
+                    "POST request has been successfully processed.");
+              } else {
+                respond(
+                    ctx,
+                    keepAlive,
+                    HttpResponseStatus.INTERNAL_SERVER_ERROR,
+                    "Failed to process POST request.");
+              }
+            });
+  }
+
+  @Override
+  public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+    cause.printStackTrace();
+    ctx.close();
+  }
+
+  private static void reject(
+      ChannelHandlerContext ctx, boolean keepAlive, AdmissionController.Decision decision) {
+    final FullHttpResponse resp =
+        response(HttpResponseStatus.valueOf(decision.status()), decision.message());
+    resp.headers().set(HttpHeaderNames.RETRY_AFTER, RETRY_AFTER_SECONDS);
+    write(ctx, keepAlive, resp);
+  }
+
+  private static void respond(
+      ChannelHandlerContext ctx, boolean keepAlive, HttpResponseStatus status, String msg) {
+    write(ctx, keepAlive, response(status, msg));
+  }
+
+  private static FullHttpResponse response(HttpResponseStatus status, String msg) {
+    final FullHttpResponse resp =
+        new DefaultFullHttpResponse(
+            HttpVersion.HTTP_1_1,
+            status,
+            Unpooled.wrappedBuffer(msg.getBytes(StandardCharsets.UTF_8)));
+    resp.headers()
+        .set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON)
+        .setInt(HttpHeaderNames.CONTENT_LENGTH, resp.content().readableBytes());
+    return resp;
+  }
+
+  /** Writes the response, then either resumes reading the connection or closes it. */
+  private static void write(ChannelHandlerContext ctx, boolean keepAlive, FullHttpResponse resp) {
+    if (keepAlive) {
+      resp.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.KEEP_ALIVE);
+      ctx.writeAndFlush(resp);
+      ctx.channel().config().setAutoRead(true);
+    } else {
+      ctx.writeAndFlush(resp).addListener(ChannelFutureListener.CLOSE);
+    }
+  }
+}
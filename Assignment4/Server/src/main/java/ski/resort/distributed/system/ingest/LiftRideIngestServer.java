@@ -0,0 +1,86 @@
+package ski.resort.distributed.system.ingest;
+
+import com.rabbitmq.client.Connection;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpServerCodec;
+import ski.resort.distributed.system.SkierServlet;
+import ski.resort.distributed.system.codec.LiftRideJsonCodec;
+import ski.resort.distributed.system.mq.AsyncConfirmPublisher;
+import ski.resort.distributed.system.mq.LiftRidePublisher;
+import ski.resort.distributed.system.mq.RabbitMQConnectionPool;
+
+import java.io.IOException;
+
+import static ski.resort.distributed.system.utils.Constants.NUM_ASYNC_CHANNEL;
+
+/**
+ * A Netty HTTP server for lift-ride POSTs that runs next to the servlets, sharing their RabbitMQ
+ * connection and admission controller. Each connection is served by one event loop thread from
+ * request bytes to publish; the response is written from the broker's confirm callback, so no
+ * thread waits for a confirm.
+ */
+public class LiftRideIngestServer implements AutoCloseable {
+
+  private final EventLoopGroup bossGroup = new NioEventLoopGroup(1);
+  private final EventLoopGroup workerGroup;
+  private final Channel serverChannel;
+  private volatile LiftRidePublisher publisher;
+
+  /** Binds to {@code port}; {@code numEventLoops} of 0 means Netty's default of twice the cores. */
+  public LiftRideIngestServer(int port, int numEventLoops) throws InterruptedException {
+    workerGroup = new NioEventLoopGroup(numEventLoops);
+    final LiftRideIngestHandler handler = new LiftRideIngestHandler(this);
+    serverChannel =
+        new ServerBootstrap()
+            .group(bossGroup, workerGroup)
+            .channel(NioServerSocketChannel.class)
+            .childOption(ChannelOption.TCP_NODELAY, true)
+            .childHandler(
+                new ChannelInitializer<SocketChannel>() {
+                  @Override
+                  protected void initChannel(SocketChannel ch) {
+                    ch.pipeline()
+                        .addLast(new HttpServerCodec())
+                        .addLast(new HttpObjectAggregator(LiftRideJsonCodec.MAX_BODY_BYTES))
+                        .addLast(handler);
+                  }
+                })
+            .bind(port)
+            .sync()
+            .channel();
+  }
+
+  /** Returns the publisher, creating it once RabbitMQ has been reached, or null until then. */
+  LiftRidePublisher getPublisher() {
+    if (publisher == null) {
+      synchronized (this) {
+        final Connection connection = RabbitMQConnectionPool.getConnection();
+        if (publisher == null && connection != null) {
+          try {
+            publisher =
+                new AsyncConfirmPublisher(
+                    connection, SkierServlet.MESSAGE_PROPS, NUM_ASYNC_CHANNEL);
+          } catch (IOException e) {
+            e.printStackTrace();
+          }
+        }
+      }
+    }
+    return publisher;
+  }
+
+  @Override
+  public void close() {
+    serverChannel.close().syncUninterruptibly();
+    bossGroup.shutdownGracefully();
+    workerGroup.shutdownGracefully();
+  }
+}
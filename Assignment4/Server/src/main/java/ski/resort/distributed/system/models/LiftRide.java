@@ -0,0 +1,99 @@
+package ski.resort.distributed.system.models;
+
+/**
+ * A fully addressed lift ride: the path ids of a POST plus the {@code time} and {@code liftID} from
+ * its body, and optionally the 128-bit request ID derived from its idempotency key. Instances are
+ * mutable so the POST hot path can reuse one per thread.
+ */
+public class LiftRide {
+
+  private static final ThreadLocal<LiftRide> CURRENT = ThreadLocal.withInitial(LiftRide::new);
+
+  private int skierID;
+  private int resortID;
+  private int seasonID;
+  private int dayID;
+  private int time;
+  private int liftID;
+  private boolean hasRequestID;
+  private long requestIDHigh;
+  private long requestIDLow;
+
+  /** Returns this thread's reusable lift ride. */
+  public static LiftRide current() {
+    return CURRENT.get();
+  }
+
+  public LiftRide setPath(int resortID, int seasonID, int dayID, int skierID) {
+    this.resortID = resortID;
+    this.seasonID = seasonID;
+    this.dayID = dayID;
+    this.skierID = skierID;
+    return this;
+  }
+
+  public int getSkierID() {
+    return skierID;
+  }
+
+  public int getResortID() {
+    return resortID;
+  }
+
+  public int getSeasonID() {
+    return seasonID;
+  }
+
+  public int getDayID() {
+    return dayID;
+  }
+
+  public int getTime() {
+    return time;
+  }
+
+  public void setTime(int time) {
+    this.time = time;
+  }
+
+  public int getLiftID() {
+    return liftID;
+  }
+
+  public void setLiftID(int liftID) {
+    this.liftID = liftID;
+  }
+
+  public boolean hasRequestID() {
+    return hasRequestID;
+  }
+
+  public long getRequestIDHigh() {
+    return requestIDHigh;
+  }
+
+  public long getRequestIDLow() {
+    return requestIDLow;
+  }
+
+  public LiftRide setRequestID(long high, long low) {
+    this.hasRequestID = true;
+    this.requestIDHigh = high;
+    this.requestIDLow = low;
+    return this;
+  }
+
+  public LiftRide clearRequestID() {
+    this.hasRequestID = false;
+    this.requestIDHigh = 0;
+    this.requestIDLow = 0;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "LiftRide{skierID=%d, resortID=%d, seasonID=%d, dayID=%d, time=%d, liftID=%d}",
+        skierID, resortID, seasonID, dayID, time, liftID);
+  }
+}
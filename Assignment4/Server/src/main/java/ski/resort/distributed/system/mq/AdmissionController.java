@@ -0,0 +1,112 @@
+package ski.resort.distributed.system.mq;
+
+import com.rabbitmq.client.BlockedListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides up front whether a POST may publish, so an overloaded broker costs callers a fast 429 or
+ * 503 instead of a Tomcat thread parked on the channel pool. It refuses new publishes while
+ * RabbitMQ has blocked the connection, while the recent average wait for a pooled channel is above
+ * its limit, or when too many publishes are already waiting for their confirms.
+ */
+public class AdmissionController implements BlockedListener {
+
+  public enum Decision {
+    ADMIT(200, null),
+    TOO_MANY_REQUESTS(429, "Too many lift rides in flight, retry later."),
+    UNAVAILABLE(503, "RabbitMQ is overloaded, retry later.");
+
+    private final int status;
+    private final String message;
+
+    Decision(int status, String message) {
+      this.status = status;
+      this.message = message;
+    }
+
+    public int status() {
+      return status;
+    }
+
+    public String message() {
+      return message;
+    }
+  }
+
+  private static final double WAIT_EWMA_WEIGHT = 0.1;
+  private static final long WAIT_SAMPLE_TTL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+  private final int maxInFlight;
+  private final long maxAvgWaitNanos;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+  private volatile boolean blocked;
+
+  // Updated without locking; a lost sample only nudges the average.
+  private volatile double avgWaitNanos;
+  private volatile long lastWaitSampleNanos;
+
+  public AdmissionController(int maxInFlight, long maxAvgWaitMillis) {
+    this.maxInFlight = maxInFlight;
+    this.maxAvgWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxAvgWaitMillis);
+  }
+
+  /** Admits one publish, which must be followed by {@link #release()} once it is confirmed. */
+  public Decision tryAdmit() {
+    Decision decision = Decision.ADMIT;
+    if (blocked || isChannelWaitHigh()) {
+      decision = Decision.UNAVAILABLE;
+    } else if (inFlight.incrementAndGet() > maxInFlight) {
+      inFlight.decrementAndGet();
+      decision = Decision.TOO_MANY_REQUESTS;
+    }
+    if (decision != Decision.ADMIT) rejected.increment();
+    return decision;
+  }
+
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  /** Records how long a caller waited for a pooled channel. */
+  public void recordChannelWait(long waitNanos) {
+    avgWaitNanos += WAIT_EWMA_WEIGHT * (waitNanos - avgWaitNanos);
+    lastWaitSampleNanos = System.nanoTime();
+  }
+
+  private boolean isChannelWaitHigh() {
+    // Rejected callers stop sampling, so let a stale average expire instead of rejecting forever.
+    if (System.nanoTime() - lastWaitSampleNanos > WAIT_SAMPLE_TTL_NANOS) {
+      avgWaitNanos = 0;
+      return false;
+    }
+    return avgWaitNanos > maxAvgWaitNanos;
+  }
+
+  public int getInFlight() {
+    return inFlight.get();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+
+  public boolean isBlocked() {
+    return blocked;
+  }
+
+  @Override
+  public void handleBlocked(String reason) {
+    System.err.println("!!! RabbitMQ blocked the connection: " + reason);
+    blocked = true;
+  }
+
+  @Override
+  public void handleUnblocked() {
+    System.out.println("RabbitMQ unblocked the connection.");
+    blocked = false;
+  }
+}
@@ -0,0 +1,102 @@
+package ski.resort.distributed.system.mq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publishes messages on a fixed set of confirm-mode channels without blocking the caller. Each
+ * channel tracks the delivery tags it has handed out, and the broker's ack/nack completes the
+ * matching futures, so many publishes can be in flight on a single channel.
+ */
+public class AsyncConfirmPublisher implements LiftRidePublisher {
+
+  private final AMQP.BasicProperties props;
+  private final ConfirmChannel[] channels;
+  private final AtomicInteger next = new AtomicInteger();
+
+  public AsyncConfirmPublisher(Connection connection, AMQP.BasicProperties props, int numChannels)
+      throws IOException {
+    this.props = props;
+    this.channels = new ConfirmChannel[numChannels];
+    for (int i = 0; i < numChannels; i++) {
+      Channel channel = connection.createChannel();
+      channel.confirmSelect();
+      channels[i] = new ConfirmChannel(channel);
+    }
+  }
+
+  @Override
+  public CompletableFuture<Boolean> publish(String queueName, byte[] body) {
+    final int idx = Math.floorMod(next.getAndIncrement(), channels.length);
+    return channels[idx].publish(queueName, body);
+  }
+
+  private class ConfirmChannel implements ConfirmListener {
+    private final Channel channel;
+    private final ConcurrentNavigableMap<Long, CompletableFuture<Boolean>> outstanding =
+        new ConcurrentSkipListMap<>();
+
+    ConfirmChannel(Channel channel) {
+      this.channel = channel;
+      channel.addConfirmListener(this);
+      channel.addShutdownListener(this::failOutstanding);
+    }
+
+    CompletableFuture<Boolean> publish(String queueName, byte[] body) {
+      final CompletableFuture<Boolean> future = new CompletableFuture<>();
+      // The sequence number and the publish must stay paired, so one publisher at a time
+      synchronized (this) {
+        final long tag = channel.getNextPublishSeqNo();
+        outstanding.put(tag, future);
+        try {
+          channel.basicPublish(QueueShards.EXCHANGE, queueName, props, body);
+        } catch (IOException | RuntimeException e) {
+          outstanding.remove(tag);
+          future.completeExceptionally(e);
+        }
+        // a caller that gives up, e.g. with orTimeout, stops waiting for a confirm that may be lost
+        future.whenComplete(
+            (acked, e) -> {
+              if (e != null) outstanding.remove(tag, future);
+            });
+      }
+      return future;
+    }
+
+    @Override
+    public void handleAck(long deliveryTag, boolean multiple) {
+      complete(deliveryTag, multiple, true);
+    }
+
+    @Override
+    public void handleNack(long deliveryTag, boolean multiple) {
+      complete(deliveryTag, multiple, false);
+    }
+
+    private void complete(long deliveryTag, boolean multiple, boolean acked) {
+      if (multiple) {
+        Map<Long, CompletableFuture<Boolean>> confirmed = outstanding.headMap(deliveryTag, true);
+        confirmed.values().forEach(f -> f.complete(acked));
+        confirmed.clear();
+      } else {
+        CompletableFuture<Boolean> future = outstanding.remove(deliveryTag);
+        if (future != null) future.complete(acked);
+      }
+    }
+
+    private void failOutstanding(ShutdownSignalException cause) {
+      outstanding.values().forEach(f -> f.completeExceptionally(cause));
+      outstanding.clear();
+    }
+  }
+}
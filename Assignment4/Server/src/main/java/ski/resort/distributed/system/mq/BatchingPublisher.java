@@ -0,0 +1,197 @@
+package ski.resort.distributed.system.mq;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownSignalException;
+import ski.resort.distributed.system.codec.LiftRideFormat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Coalesces lift rides from concurrent POSTs into batched messages. Each flusher thread owns one
+ * confirm-mode channel, collects up to {@code maxBatchSize} rides or waits at most {@code
+ * maxDelayMicros} after the first one, publishes them as one message per destination queue and
+ * waits for one confirm. The outcome of that confirm is shared by every ride in the batch.
+ *
+ * <p>A channel the broker closes, e.g. on a channel error, is replaced before the next batch;
+ * automatic recovery only reopens channels lost with their connection. Once closed, the publisher
+ * fails the rides still waiting and every later publish.
+ */
+public class BatchingPublisher implements LiftRidePublisher, AutoCloseable {
+
+  /** AMQP message type that marks a message holding a batch of lift rides. */
+  public static final String BATCH_MESSAGE_TYPE = "liftRideBatch";
+
+  private final Connection connection;
+  private final LiftRideFormat format;
+  private final AMQP.BasicProperties batchProps;
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final long confirmTimeoutMillis;
+  private final BlockingQueue<PendingRide> pending = new LinkedBlockingQueue<>();
+  private final List<Thread> flushers = new ArrayList<>();
+  private volatile boolean closed;
+
+  public BatchingPublisher(
+      Connection connection,
+      LiftRideFormat format,
+      int numFlushers,
+      int maxBatchSize,
+      long maxDelayMicros,
+      long confirmTimeoutMillis)
+      throws IOException {
+    this.connection = connection;
+    this.format = format;
+    this.batchProps = batchProperties(format);
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos(maxDelayMicros);
+    this.confirmTimeoutMillis = confirmTimeoutMillis;
+
+    for (int i = 0; i < numFlushers; i++) {
+      final Channel channel = openChannel(connection);
+      Thread flusher = new Thread(() -> runFlusher(channel), "batch-publisher-" + i);
+      flusher.setDaemon(true);
+      flushers.add(flusher);
+    }
+    flushers.forEach(Thread::start);
+  }
+
+  /** Message properties for a batch of lift rides encoded in the given format. */
+  public static AMQP.BasicProperties batchProperties(LiftRideFormat format) {
+    return new AMQP.BasicProperties.Builder()
+        .contentType(format.contentType())
+        .type(BATCH_MESSAGE_TYPE)
+        .build();
+  }
+
+  @Override
+  public CompletableFuture<Boolean> publish(String queueName, byte[] liftRide) {
+    if (closed) return CompletableFuture.failedFuture(new IOException("Publisher closed."));
+    final PendingRide ride = new PendingRide(queueName, liftRide);
+    pending.add(ride);
+    if (closed) failPending(); // raced with close(), which may have drained the queue already
+    return ride.future;
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    flushers.forEach(Thread::interrupt);
+    failPending();
+  }
+
+  private void failPending() {
+    PendingRide ride;
+    while ((ride = pending.poll()) != null) {
+      ride.future.completeExceptionally(new IOException("Publisher closed."));
+    }
+  }
+
+  private static Channel openChannel(Connection connection) throws IOException {
+    final Channel channel = connection.createChannel();
+    if (channel == null) throw new IOException("No channel number left on the connection.");
+    channel.confirmSelect();
+    return channel;
+  }
+
+  private void runFlusher(Channel initialChannel) {
+    Channel channel = initialChannel;
+    final List<PendingRide> batch = new ArrayList<>(maxBatchSize);
+    final Map<String, List<byte[]>> bodiesByQueue = new HashMap<>();
+    final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        collectBatch(batch);
+        channel = reopenIfClosed(channel);
+        publishBatch(channel, batch, bodiesByQueue, scratch);
+        batch.clear();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      batch.forEach(r -> r.future.completeExceptionally(new IOException("Publisher closed.")));
+      try {
+        channel.close();
+      } catch (IOException | TimeoutException | RuntimeException e) {
+        // already closed with its connection
+      }
+    }
+  }
+
+  /** Returns the channel, or a new one if the broker closed it and recovery will not reopen it. */
+  private Channel reopenIfClosed(Channel channel) {
+    final ShutdownSignalException reason = channel.getCloseReason();
+    // a hard error closed the connection, whose automatic recovery reopens the channel too
+    if (channel.isOpen() || reason == null || reason.isHardError()) return channel;
+    try {
+      return openChannel(connection);
+    } catch (IOException | RuntimeException e) {
+      System.err.println("!!! Failed to reopen a batch publisher channel: " + e.getMessage());
+      return channel; // this batch fails, the next one tries again
+    }
+  }
+
+  /** Blocks for the first ride, then keeps collecting until the batch is full or due. */
+  private void collectBatch(List<PendingRide> batch) throws InterruptedException {
+    batch.add(pending.take());
+    final long deadline = System.nanoTime() + maxDelayNanos;
+    while (batch.size() < maxBatchSize) {
+      if (pending.drainTo(batch, maxBatchSize - batch.size()) > 0) continue;
+      final long remaining = deadline - System.nanoTime();
+      if (remaining <= 0) break;
+      PendingRide next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+      if (next == null) break;
+      batch.add(next);
+    }
+  }
+
+  private void publishBatch(
+      Channel channel,
+      List<PendingRide> batch,
+      Map<String, List<byte[]>> bodiesByQueue,
+      ByteArrayOutputStream scratch)
+      throws InterruptedException {
+    bodiesByQueue.values().forEach(List::clear);
+    for (PendingRide ride : batch) {
+      bodiesByQueue.computeIfAbsent(ride.queueName, q -> new ArrayList<>()).add(ride.body);
+    }
+
+    boolean acked;
+    try {
+      for (Map.Entry<String, List<byte[]>> entry : bodiesByQueue.entrySet()) {
+        if (entry.getValue().isEmpty()) continue;
+        final byte[] message = format.encodeBatch(entry.getValue(), scratch);
+        channel.basicPublish(QueueShards.EXCHANGE, entry.getKey(), batchProps, message);
+      }
+      acked = channel.waitForConfirms(confirmTimeoutMillis);
+    } catch (IOException | TimeoutException | RuntimeException e) {
+      e.printStackTrace();
+      acked = false;
+    }
+    for (PendingRide ride : batch) {
+      ride.future.complete(acked);
+    }
+  }
+
+  private static class PendingRide {
+    private final String queueName;
+    private final byte[] body;
+    private final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+    PendingRide(String queueName, byte[] body) {
+      this.queueName = queueName;
+      this.body = body;
+    }
+  }
+}
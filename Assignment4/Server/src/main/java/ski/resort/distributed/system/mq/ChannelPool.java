@@ -0,0 +1,202 @@
+package ski.resort.distributed.system.mq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ShutdownSignalException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Confirm-mode channels spread round-robin over several connections, so publishes are not all
+ * serialized through one socket and its frame writer.
+ *
+ * <p>Each thread prefers the slot it used last, which keeps threads on their own channel without a
+ * hand-off through a shared queue. A semaphore counts the free slots, so a caller holding a permit
+ * always finds one by scanning from its preferred slot. A channel found closed, e.g. after a
+ * channel-level error, is replaced on its connection before it is handed out.
+ */
+public class ChannelPool {
+
+  private static final class Slot {
+    final int connectionIndex;
+    final AtomicBoolean inUse = new AtomicBoolean(false);
+    volatile Channel channel;
+    long borrowedAtNanos; // only touched by the current holder
+
+    Slot(int connectionIndex, Channel channel) {
+      this.connectionIndex = connectionIndex;
+      this.channel = channel;
+    }
+  }
+
+  private final List<Connection> connections;
+  private final Slot[] slots;
+  private final Semaphore free;
+  private final Map<Channel, Slot> slotOf = new ConcurrentHashMap<>(); // channels use identity
+  private final AtomicInteger nextPreferred = new AtomicInteger();
+  private final ThreadLocal<int[]> preferred =
+      ThreadLocal.withInitial(() -> new int[] {nextPreferred.getAndIncrement()});
+
+  // metrics
+  private final long createdNanos = System.nanoTime();
+  private final LongAdder borrows = new LongAdder();
+  private final LongAdder timeouts = new LongAdder();
+  private final LongAdder waitNanos = new LongAdder();
+  private final AtomicLong maxWaitNanos = new AtomicLong();
+  private final LongAdder busyNanos = new LongAdder();
+  private final LongAdder replacedChannels = new LongAdder();
+  private final LongAdder[] connectionBorrows;
+
+  public ChannelPool(List<Connection> connections, int numChannels) throws IOException {
+    this.connections = connections;
+    this.slots = new Slot[numChannels];
+    this.connectionBorrows = new LongAdder[connections.size()];
+    for (int i = 0; i < connectionBorrows.length; i++) {
+      connectionBorrows[i] = new LongAdder();
+    }
+    for (int i = 0; i < numChannels; i++) {
+      final int connectionIndex = i % connections.size();
+      slots[i] = new Slot(connectionIndex, openChannel(connectionIndex));
+      slotOf.put(slots[i].channel, slots[i]);
+    }
+    this.free = new Semaphore(numChannels);
+  }
+
+  /**
+   * Takes a channel, waiting at most {@code timeoutMillis}. Returns null if none became free in
+   * time. Throws if a closed channel could not be replaced, e.g. while its connection recovers.
+   */
+  public Channel borrow(long timeoutMillis) throws IOException, InterruptedException {
+    final long start = System.nanoTime();
+    if (!free.tryAcquire() && !free.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+      recordWait(System.nanoTime() - start);
+      timeouts.increment();
+      return null;
+    }
+    final long now = System.nanoTime();
+    recordWait(now - start);
+
+    // a permit guarantees a free slot; start the scan at this thread's own
+    final int[] pref = preferred.get();
+    for (int i = 0; i < slots.length; i++) {
+      // floorMod: the counter goes negative after 2^31 threads, e.g. virtual ones
+      final int index = Math.floorMod(pref[0] + i, slots.length);
+      final Slot slot = slots[index];
+      if (slot.inUse.compareAndSet(false, true)) {
+        pref[0] = index;
+        return checkOut(slot, now);
+      }
+    }
+    free.release(); // unreachable while permits match free slots
+    return null;
+  }
+
+  public void release(Channel channel) {
+    final Slot slot = slotOf.get(channel);
+    if (slot == null || slot.channel != channel) return; // not ours, or already replaced
+    busyNanos.add(System.nanoTime() - slot.borrowedAtNanos);
+    slot.inUse.set(false);
+    free.release();
+  }
+
+  private Channel checkOut(Slot slot, long now) throws IOException {
+    if (!slot.channel.isOpen()) {
+      try {
+        replace(slot);
+      } catch (IOException e) {
+        slot.inUse.set(false);
+        free.release();
+        throw e;
+      }
+    }
+    slot.borrowedAtNanos = now;
+    borrows.increment();
+    connectionBorrows[slot.connectionIndex].increment();
+    return slot.channel;
+  }
+
+  private void replace(Slot slot) throws IOException {
+    final Channel replacement = openChannel(slot.connectionIndex);
+    slotOf.remove(slot.channel);
+    slotOf.put(replacement, slot);
+    slot.channel = replacement;
+    replacedChannels.increment();
+  }
+
+  private Channel openChannel(int connectionIndex) throws IOException {
+    final Channel channel;
+    try {
+      channel = connections.get(connectionIndex).createChannel();
+    } catch (ShutdownSignalException e) {
+      throw new IOException("RabbitMQ connection " + connectionIndex + " is closed.", e);
+    }
+    if (channel == null) {
+      throw new IOException("RabbitMQ connection " + connectionIndex + " has no free channels.");
+    }
+    channel.confirmSelect(); // Enable confirm mode once per channel
+    return channel;
+  }
+
+  private void recordWait(long nanos) {
+    waitNanos.add(nanos);
+    maxWaitNanos.accumulateAndGet(nanos, Math::max);
+  }
+
+  public int size() {
+    return slots.length;
+  }
+
+  public int getInUse() {
+    return slots.length - free.availablePermits();
+  }
+
+  public long getBorrows() {
+    return borrows.sum();
+  }
+
+  public long getTimeouts() {
+    return timeouts.sum();
+  }
+
+  public double getAvgWaitMicros() {
+    final long attempts = borrows.sum() + timeouts.sum();
+    return attempts == 0 ? 0 : waitNanos.sum() / 1000.0 / attempts;
+  }
+
+  public double getMaxWaitMicros() {
+    return maxWaitNanos.get() / 1000.0;
+  }
+
+  /** Fraction of channel time spent borrowed since the pool was created. */
+  public double getUtilization() {
+    final long elapsed = System.nanoTime() - createdNanos;
+    return elapsed <= 0 ? 0 : (double) busyNanos.sum() / elapsed / slots.length;
+  }
+
+  public long getReplacedChannels() {
+    return replacedChannels.sum();
+  }
+
+  /** Borrows per connection, i.e. publishes (or published batches) each connection carried. */
+  public long[] getConnectionBorrows() {
+    final long[] counts = new long[connectionBorrows.length];
+    for (int i = 0; i < counts.length; i++) {
+      counts[i] = connectionBorrows[i].sum();
+    }
+    return counts;
+  }
+
+  /** Seconds since the pool was created, to turn the counters above into rates. */
+  public double getUptimeSeconds() {
+    return (System.nanoTime() - createdNanos) / 1e9;
+  }
+}
@@ -0,0 +1,14 @@
+package ski.resort.distributed.system.mq;
+
+import java.util.concurrent.CompletableFuture;
+
+/** Publishes encoded lift rides to RabbitMQ without blocking the calling servlet thread. */
+public interface LiftRidePublisher {
+
+  /**
+   * Publishes one encoded lift ride to the queue. The future completes with {@code true} once the
+   * broker has confirmed it, {@code false} on a nack, and exceptionally if it could not be
+   * published.
+   */
+  CompletableFuture<Boolean> publish(String queueName, byte[] liftRide);
+}
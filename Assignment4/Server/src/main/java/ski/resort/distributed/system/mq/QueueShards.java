@@ -0,0 +1,70 @@
+package ski.resort.distributed.system.mq;
+
+import com.rabbitmq.client.BuiltinExchangeType;
+import com.rabbitmq.client.Channel;
+
+import java.io.IOException;
+import java.util.Map;
+
+import static ski.resort.distributed.system.utils.Constants.EXCHANGE_NAME;
+import static ski.resort.distributed.system.utils.Constants.NUM_QUEUE_SHARDS;
+import static ski.resort.distributed.system.utils.Constants.QUEUE_NAME;
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_ENABLED;
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_STREAM;
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_STREAM_MAX_BYTES;
+
+/**
+ * Routes lift rides to queues by skier. With one shard everything goes to {@code QUEUE_NAME} as
+ * before. With N shards, ride queues are named {@code QUEUE_NAME.0} to {@code QUEUE_NAME.(N-1)} and
+ * every ride of a skier goes to the same queue. Shard queues are declared single-active-consumer,
+ * so the broker delivers each one to exactly one Consumer channel and a skier's rides are applied
+ * in order, while different shards are consumed in parallel.
+ *
+ * <p>Rides are published to the direct exchange {@code EXCHANGE_NAME} with the shard queue's name
+ * as routing key. Each shard queue is bound under its own name, and with the read model enabled the
+ * ride stream is bound under every name, so it receives a copy of every ride.
+ */
+public class QueueShards {
+
+  /** The exchange every ride is published to, with {@link #queueFor} as routing key. */
+  public static final String EXCHANGE = EXCHANGE_NAME;
+
+  private static final Map<String, Object> QUEUE_ARGS =
+      NUM_QUEUE_SHARDS == 1 ? null : Map.of("x-single-active-consumer", true);
+  private static final Map<String, Object> STREAM_ARGS =
+      Map.of("x-queue-type", "stream", "x-max-length-bytes", READ_MODEL_STREAM_MAX_BYTES);
+  private static final String[] QUEUE_NAMES = new String[NUM_QUEUE_SHARDS];
+
+  static {
+    for (int i = 0; i < NUM_QUEUE_SHARDS; i++) {
+      QUEUE_NAMES[i] = NUM_QUEUE_SHARDS == 1 ? QUEUE_NAME : QUEUE_NAME + "." + i;
+    }
+  }
+
+  private QueueShards() {}
+
+  public static int numShards() {
+    return NUM_QUEUE_SHARDS;
+  }
+
+  /** Returns the queue that holds all lift rides of this skier. */
+  public static String queueFor(int skierID) {
+    if (NUM_QUEUE_SHARDS == 1) return QUEUE_NAMES[0];
+    // skier IDs are sequential, so scramble them before taking the modulus
+    return QUEUE_NAMES[Math.floorMod(skierID * 0x9E3779B9, NUM_QUEUE_SHARDS)];
+  }
+
+  /** Declares the exchange and every ride queue on the channel, and binds them. */
+  public static void declare(Channel channel) throws IOException {
+    channel.exchangeDeclare(EXCHANGE, BuiltinExchangeType.DIRECT, true);
+    if (READ_MODEL_ENABLED) {
+      // streams are always durable
+      channel.queueDeclare(READ_MODEL_STREAM, true, false, false, STREAM_ARGS);
+    }
+    for (String queueName : QUEUE_NAMES) {
+      channel.queueDeclare(queueName, false, false, false, QUEUE_ARGS);
+      channel.queueBind(queueName, EXCHANGE, queueName);
+      if (READ_MODEL_ENABLED) channel.queueBind(READ_MODEL_STREAM, EXCHANGE, queueName);
+    }
+  }
+}
@@ -0,0 +1,156 @@
+package ski.resort.distributed.system.mq;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import ski.resort.distributed.system.readmodel.LiftRideStreamConsumer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static ski.resort.distributed.system.utils.Constants.DOTENV;
+import static ski.resort.distributed.system.utils.Constants.MAX_AVG_CHANNEL_WAIT_MILLIS;
+import static ski.resort.distributed.system.utils.Constants.MAX_IN_FLIGHT_PUBLISHES;
+import static ski.resort.distributed.system.utils.Constants.NUM_CHANNEL;
+import static ski.resort.distributed.system.utils.Constants.NUM_CONNECTIONS;
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_ENABLED;
+
+/**
+ * The RabbitMQ connections shared by all servlets, with a {@link ChannelPool} of confirm-mode
+ * channels spread over them for publishers that wait for their confirms on the calling thread, and
+ * the admission controller that guards every publish path.
+ */
+public class RabbitMQConnectionPool {
+
+  private static final AdmissionController admissionController =
+      new AdmissionController(MAX_IN_FLIGHT_PUBLISHES, MAX_AVG_CHANNEL_WAIT_MILLIS);
+
+  private static volatile List<Connection> connections;
+  private static volatile Connection connection; // the first one, for publishers that own channels
+  private static volatile ChannelPool channelPool;
+
+  public static synchronized void init() throws IOException, TimeoutException {
+    // make sure only one connection exists
+    if (connection != null) {
+      return; // already initialized
+    }
+
+    ConnectionFactory connectionFactory = new ConnectionFactory();
+    connectionFactory.setHost(DOTENV.get("RMQ_HOST"));
+    connectionFactory.setPort(Integer.parseInt(DOTENV.get("RMQ_PORT")));
+    connectionFactory.setUsername(DOTENV.get("RMQ_USER"));
+    connectionFactory.setPassword(DOTENV.get("RMQ_PW"));
+    connectionFactory.setAutomaticRecoveryEnabled(true); // reopen connection and channels on drops
+    final List<Connection> newConnections = new ArrayList<>(NUM_CONNECTIONS);
+    try {
+      for (int i = 0; i < NUM_CONNECTIONS; i++) {
+        final Connection newConnection = connectionFactory.newConnection("skier-servlet-" + i);
+        newConnection.addBlockedListener(admissionController);
+        newConnections.add(newConnection);
+      }
+
+      // declare the ride queues once
+      try (Channel channel = newConnections.get(0).createChannel()) {
+        QueueShards.declare(channel);
+      }
+
+      // channelPool setup.
+      channelPool = new ChannelPool(newConnections, NUM_CHANNEL);
+    } catch (IOException | TimeoutException e) {
+      closeQuietly(newConnections);
+      throw e;
+    }
+    connections = newConnections;
+    connection = newConnections.get(0); // published last: non-null means ready
+
+    if (READ_MODEL_ENABLED) {
+      LiftRideStreamConsumer.subscribe(connection); // the GETs use MySQL until it is ready
+    }
+  }
+
+  /**
+   * Keeps retrying {@link #init()} in the background until RabbitMQ is reachable. Drops after that
+   * are handled by the client's automatic recovery.
+   */
+  public static void connectInBackground(long retryIntervalMillis) {
+    final Thread connector =
+        new Thread(
+            () -> {
+              while (connection == null) {
+                try {
+                  TimeUnit.MILLISECONDS.sleep(retryIntervalMillis);
+                  init();
+                  System.out.println("Connected to RabbitMQ.");
+                } catch (InterruptedException e) {
+                  return;
+                } catch (Exception e) {
+                  System.err.println("!!! RabbitMQ still unreachable: " + e.getMessage());
+                }
+              }
+            },
+            "rabbitmq-connector");
+    connector.setDaemon(true);
+    connector.start();
+  }
+
+  /** True while there is an open connection that the broker has not blocked. */
+  public static boolean isAvailable() {
+    final Connection current = connection;
+    return current != null && current.isOpen() && !admissionController.isBlocked();
+  }
+
+  /** Returns the first shared connection, or null if RabbitMQ has not been reached yet. */
+  public static Connection getConnection() {
+    return connection;
+  }
+
+  /** Returns the channel pool, for its metrics, or null if RabbitMQ has not been reached yet. */
+  public static ChannelPool getChannelPool() {
+    return channelPool;
+  }
+
+  public static AdmissionController getAdmissionController() {
+    return admissionController;
+  }
+
+  /**
+   * Takes a confirm-mode channel from the pool, waiting at most {@code timeoutMillis}. Returns null
+   * if none became free in time.
+   */
+  public static Channel borrowChannel(long timeoutMillis) throws IOException, InterruptedException {
+    if (channelPool == null) {
+      throw new IOException("RabbitMQ connection is not available.");
+    }
+    final long start = System.nanoTime();
+    final Channel channel = channelPool.borrow(timeoutMillis);
+    admissionController.recordChannelWait(System.nanoTime() - start);
+    return channel;
+  }
+
+  public static void returnChannel(Channel channel) {
+    final ChannelPool pool = channelPool;
+    if (pool != null) pool.release(channel);
+  }
+
+  public static synchronized void close() throws IOException {
+    if (connection != null) {
+      connection = null;
+      channelPool = null;
+      closeQuietly(connections);
+      connections = null;
+    }
+  }
+
+  private static void closeQuietly(List<Connection> toClose) {
+    for (Connection c : toClose) {
+      try {
+        c.close();
+      } catch (Exception e) {
+        e.printStackTrace();
+      }
+    }
+  }
+}
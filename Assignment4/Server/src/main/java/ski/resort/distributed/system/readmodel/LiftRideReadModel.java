@@ -0,0 +1,179 @@
+package ski.resort.distributed.system.readmodel;
+
+import ski.resort.distributed.system.dal.VerticalCache;
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_DEDUP_WINDOW;
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_INITIAL_CAPACITY;
+
+/**
+ * The answers to the three GETs, kept in memory and updated from the stream of lift rides rather
+ * than computed from MySQL per request: total vertical per skier day, total vertical per skier,
+ * resort and season, and unique skiers per resort day.
+ *
+ * <p>The model is built by {@link LiftRideStreamConsumer}, from a snapshot of the Consumer's
+ * aggregate tables and the rides on the stream since, and reports {@link #isReady()} once the
+ * replay has caught up; it is then installed as {@link #getInstance()}. Until then, and for ids
+ * that do not fit a packed key, the getters return {@link #UNKNOWN} and callers fall back to the
+ * DAOs. If the stream's retention drops rides before they are applied, the model is marked trimmed
+ * and stops answering until a new one, from a new snapshot, has caught up and replaced it.
+ *
+ * <p>A ride whose request ID was among the last {@code READ_MODEL_DEDUP_WINDOW} applied is skipped,
+ * as MySQL drops it by its unique request ID, so spool replays and late retries do not make the
+ * model count more than the database.
+ *
+ * <p>Each answer also has a version, which counts the rides that changed it and serves as its
+ * {@code ETag}. A snapshot loads each version as the ride count MySQL holds, and the replay counts
+ * each later ride once, so Servers that started from different snapshots still agree on versions
+ * once caught up. A value is always written before its version, so a reader that takes the version
+ * first never pairs a new version with an old value.
+ */
+public class LiftRideReadModel {
+
+  /** Returned by the getters when the model cannot answer. */
+  public static final int UNKNOWN = -1;
+
+  private static volatile LiftRideReadModel instance = new LiftRideReadModel(); // never ready
+
+  private final LongIntMap skierDayVertical = new LongIntMap(READ_MODEL_INITIAL_CAPACITY);
+  private final LongIntMap skierResortVertical = new LongIntMap(READ_MODEL_INITIAL_CAPACITY);
+  private final LongIntMap resortDaySkiers = new LongIntMap(READ_MODEL_INITIAL_CAPACITY);
+  private final LongIntMap skierDayVersion = new LongIntMap(READ_MODEL_INITIAL_CAPACITY);
+  private final LongIntMap skierResortVersion = new LongIntMap(READ_MODEL_INITIAL_CAPACITY);
+  private final LongIntMap resortDayVersion = new LongIntMap(READ_MODEL_INITIAL_CAPACITY);
+  private final RecentRequestIDs recentRequestIDs = new RecentRequestIDs(READ_MODEL_DEDUP_WINDOW);
+  private final LongAdder duplicates = new LongAdder();
+  private volatile boolean ready;
+  private volatile long trimmedAt = -1; // first offset of a trimmed stream
+
+  /** The model the GETs read: the last one that caught up, or an empty one that is not ready. */
+  public static LiftRideReadModel getInstance() {
+    return instance;
+  }
+
+  public boolean isReady() {
+    return ready;
+  }
+
+  /** Marks the model caught up and makes it the one the GETs read. */
+  void install() {
+    ready = true;
+    instance = this;
+  }
+
+  /** True if the stream lost rides before they were applied, so the model stopped answering. */
+  public boolean isTrimmed() {
+    return trimmedAt >= 0;
+  }
+
+  /** The offset the stream continued at after the lost rides, or -1. */
+  public long getTrimmedAt() {
+    return trimmedAt;
+  }
+
+  void markTrimmed(long offset) {
+    ready = false;
+    trimmedAt = offset;
+  }
+
+  /** Rides skipped because their request ID had already been applied. */
+  public long getDuplicates() {
+    return duplicates.sum();
+  }
+
+  /** Remembers a request ID the snapshot already holds, so the replay skips its ride. */
+  void loadRequestID(long requestIDHigh) {
+    recentRequestIDs.add(requestIDHigh);
+  }
+
+  /** Loads one skier day of the snapshot; its version is its ride count, as if each was applied. */
+  void loadSkierDay(int resortID, int seasonID, int dayID, int skierID, int rides, int vertical) {
+    final long skierDay = VerticalCache.packSkierDay(resortID, seasonID, dayID, skierID);
+    if (skierDay == VerticalCache.NO_KEY) return;
+    if (skierDayVertical.add(skierDay, vertical)) {
+      final long resortDay = skierDay & 0xFFFFFFFFL;
+      resortDaySkiers.add(resortDay, 1);
+      resortDayVersion.add(resortDay, 1);
+    }
+    skierDayVersion.add(skierDay, rides);
+  }
+
+  /** Loads one skier season of the snapshot. */
+  void loadSkierSeason(int skierID, int resortID, int seasonID, int rides, int vertical) {
+    final long skierResort = VerticalCache.packSkierResort(skierID, resortID, seasonID);
+    if (skierResort == VerticalCache.NO_KEY) return;
+    skierResortVertical.add(skierResort, vertical);
+    skierResortVersion.add(skierResort, rides);
+  }
+
+  /** Applies one lift ride. Called from the stream consumer only, so never concurrently. */
+  void apply(LiftRide liftRide) {
+    if (liftRide.hasRequestID() && !recentRequestIDs.add(liftRide.getRequestIDHigh())) {
+      duplicates.increment();
+      return;
+    }
+    final int vertical = liftRide.getLiftID() * 10;
+    final long skierDay =
+        VerticalCache.packSkierDay(
+            liftRide.getResortID(),
+            liftRide.getSeasonID(),
+            liftRide.getDayID(),
+            liftRide.getSkierID());
+    if (skierDay != VerticalCache.NO_KEY) {
+      if (skierDayVertical.add(skierDay, vertical)) {
+        // the skier's first ride that day; the low 32 bits of the key are the resort day
+        final long resortDay = skierDay & 0xFFFFFFFFL;
+        resortDaySkiers.add(resortDay, 1);
+        resortDayVersion.add(resortDay, 1);
+      }
+      skierDayVersion.add(skierDay, 1);
+    }
+    final long skierResort =
+        VerticalCache.packSkierResort(
+            liftRide.getSkierID(), liftRide.getResortID(), liftRide.getSeasonID());
+    if (skierResort != VerticalCache.NO_KEY) {
+      skierResortVertical.add(skierResort, vertical);
+      skierResortVersion.add(skierResort, 1);
+    }
+  }
+
+  public int getSkierDayVertical(int resortID, int seasonID, int dayID, int skierID) {
+    return lookup(skierDayVertical, VerticalCache.packSkierDay(resortID, seasonID, dayID, skierID));
+  }
+
+  public int getSkierResortVertical(int skierID, int resortID, int seasonID) {
+    return lookup(skierResortVertical, VerticalCache.packSkierResort(skierID, resortID, seasonID));
+  }
+
+  public int getUniqueSkiers(int resortID, int seasonID, int dayID) {
+    // skier 0 leaves just the resort day in the key
+    return lookup(resortDaySkiers, VerticalCache.packSkierDay(resortID, seasonID, dayID, 0));
+  }
+
+  /** The version of {@link #getSkierDayVertical}'s answer, or {@link #UNKNOWN}. */
+  public int getSkierDayVersion(int resortID, int seasonID, int dayID, int skierID) {
+    return lookup(skierDayVersion, VerticalCache.packSkierDay(resortID, seasonID, dayID, skierID));
+  }
+
+  /** The version of {@link #getSkierResortVertical}'s answer, or {@link #UNKNOWN}. */
+  public int getSkierResortVersion(int skierID, int resortID, int seasonID) {
+    return lookup(skierResortVersion, VerticalCache.packSkierResort(skierID, resortID, seasonID));
+  }
+
+  /** The version of {@link #getUniqueSkiers}'s answer, or {@link #UNKNOWN}. */
+  public int getResortDayVersion(int resortID, int seasonID, int dayID) {
+    return lookup(resortDayVersion, VerticalCache.packSkierDay(resortID, seasonID, dayID, 0));
+  }
+
+  /** Number of skier days, skier seasons and resort days held. */
+  public long size() {
+    return skierDayVertical.size() + skierResortVertical.size() + resortDaySkiers.size();
+  }
+
+  private int lookup(LongIntMap map, long key) {
+    if (!ready || key == VerticalCache.NO_KEY) return UNKNOWN;
+    return map.get(key, 0); // caught up, so a missing key means no rides
+  }
+}
@@ -0,0 +1,196 @@
+package ski.resort.distributed.system.readmodel;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import ski.resort.distributed.system.codec.LiftRideMessageReader;
+import ski.resort.distributed.system.dal.DBCPConnectionPool;
+import ski.resort.distributed.system.dal.ReadModelSnapshotDao;
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_DEDUP_WINDOW;
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_PREFETCH;
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_SNAPSHOT_OVERLAP_MILLIS;
+import static ski.resort.distributed.system.utils.Constants.READ_MODEL_STREAM;
+import static ski.resort.distributed.system.utils.Constants.RECONNECT_INTERVAL_MILLIS;
+
+/**
+ * Feeds a {@link LiftRideReadModel} from the ride stream, a RabbitMQ stream queue bound to every
+ * ride routing key. A model starts from a snapshot of the Consumer's aggregate tables, see {@link
+ * ReadModelSnapshotDao}, rather than from the stream's first offset, which retention drops in
+ * time. The time is noted before the snapshot is read, and the stream is consumed from {@code
+ * READ_MODEL_SNAPSHOT_OVERLAP_MILLIS} before it. Rides of that overlap that the snapshot already
+ * holds are skipped by their request IDs, loaded with it. The overlap must cover how far the
+ * Consumers lag behind the stream, or rides still queued at snapshot time are missed, and rides
+ * without a request ID in the overlap are counted twice.
+ *
+ * <p>To know when the replay has caught up, it appends a marker with a fresh id to the stream when
+ * it subscribes; every ride published before the marker is delivered before it. Offsets already
+ * applied are skipped, so the automatic recovery's re-subscription does not count rides twice. If
+ * the offsets jump past unapplied rides, which retention dropped while the channel was down, the
+ * model could only undercount: it is marked trimmed, the GETs go back to MySQL, and a new model is
+ * built from a new snapshot to replace it.
+ */
+public class LiftRideStreamConsumer extends DefaultConsumer {
+
+  private static final String MARKER_TYPE = "readModelMarker";
+  private static final String OFFSET_HEADER = "x-stream-offset";
+  private static final int ACK_EVERY = Math.max(1, READ_MODEL_PREFETCH / 4);
+
+  private final Connection connection;
+  private final String marker;
+  private final LiftRide liftRide = new LiftRide();
+  private final Consumer<LiftRide> apply;
+  private final LiftRideReadModel model;
+  private long lastOffset = -1;
+  private int unacked;
+  private boolean stopped; // trimmed; deliveries still in flight are dropped
+
+  private LiftRideStreamConsumer(
+      Connection connection, Channel channel, LiftRideReadModel model, String marker) {
+    super(channel);
+    this.connection = connection;
+    this.model = model;
+    this.apply = model::apply;
+    this.marker = marker;
+  }
+
+  /**
+   * Builds a read model in the background: loads the snapshot, retrying until MySQL answers, then
+   * replays the stream into it on a channel of its own.
+   */
+  public static void subscribe(Connection connection) {
+    startLoader(connection, null);
+  }
+
+  /** Starts building a new model, after closing the channel of the one it replaces, if any. */
+  private static void startLoader(Connection connection, Channel replaced) {
+    final Thread loader =
+        new Thread(
+            () -> {
+              if (replaced != null) closeQuietly(replaced);
+              build(connection);
+            },
+            "read-model-loader");
+    loader.setDaemon(true);
+    loader.start();
+  }
+
+  private static void closeQuietly(Channel channel) {
+    try {
+      channel.close();
+    } catch (IOException | TimeoutException | RuntimeException e) {
+      // already closed, or the connection is down
+    }
+  }
+
+  private static void build(Connection connection) {
+    while (true) {
+      final LiftRideReadModel model = new LiftRideReadModel();
+      final long snapshotMillis = System.currentTimeMillis();
+      try {
+        DBCPConnectionPool.init(); // a no-op once the listener has run
+        new ReadModelSnapshotDao().load(READ_MODEL_DEDUP_WINDOW, snapshotHandler(model));
+        System.out.println("Read model loaded from MySQL; replaying the ride stream.");
+        subscribe(connection, model, new Date(snapshotMillis - READ_MODEL_SNAPSHOT_OVERLAP_MILLIS));
+        return;
+      } catch (SQLException | IOException | RuntimeException e) {
+        System.err.println("!!! Failed to build the read model, retrying: " + e.getMessage());
+      }
+      try {
+        TimeUnit.MILLISECONDS.sleep(RECONNECT_INTERVAL_MILLIS);
+      } catch (InterruptedException e) {
+        return;
+      }
+    }
+  }
+
+  private static ReadModelSnapshotDao.Handler snapshotHandler(LiftRideReadModel model) {
+    return new ReadModelSnapshotDao.Handler() {
+      @Override
+      public void requestID(long requestIDHigh) {
+        model.loadRequestID(requestIDHigh);
+      }
+
+      @Override
+      public void skierDay(
+          int resortID, int seasonID, int dayID, int skierID, int rides, int totalVertical) {
+        model.loadSkierDay(resortID, seasonID, dayID, skierID, rides, totalVertical);
+      }
+
+      @Override
+      public void skierSeason(
+          int skierID, int resortID, int seasonID, int rides, int totalVertical) {
+        model.loadSkierSeason(skierID, resortID, seasonID, rides, totalVertical);
+      }
+    };
+  }
+
+  private static void subscribe(Connection connection, LiftRideReadModel model, Date from)
+      throws IOException {
+    final Channel channel = connection.createChannel();
+    channel.basicQos(READ_MODEL_PREFETCH); // streams need manual acks and a prefetch
+    final String marker = UUID.randomUUID().toString();
+    channel.basicConsume(
+        READ_MODEL_STREAM,
+        false,
+        Map.of(OFFSET_HEADER, from), // from about that second, a chunk of rides at a time
+        new LiftRideStreamConsumer(connection, channel, model, marker));
+    channel.basicPublish(
+        "",
+        READ_MODEL_STREAM,
+        new AMQP.BasicProperties.Builder().type(MARKER_TYPE).messageId(marker).build(),
+        new byte[0]);
+  }
+
+  @Override
+  public void handleDelivery(
+      String consumerTag, Envelope envelope, AMQP.BasicProperties properties, byte[] body)
+      throws IOException {
+    if (stopped) return;
+    final long offset = ((Number) properties.getHeaders().get(OFFSET_HEADER)).longValue();
+    if (lastOffset >= 0 && offset > lastOffset + 1) {
+      System.err.println(
+          "!!! Ride stream skipped from offset "
+              + lastOffset
+              + " to "
+              + offset
+              + "; serving GETs from MySQL until a new read model is built.");
+      model.markTrimmed(offset);
+      stopped = true;
+      startLoader(connection, getChannel());
+      return;
+    }
+    if (offset > lastOffset) {
+      lastOffset = offset;
+      if (MARKER_TYPE.equals(properties.getType())) {
+        // markers of other Servers and models are skipped
+        if (marker.equals(properties.getMessageId()) && !model.isReady()) {
+          model.install();
+          System.out.println("Read model caught up at offset " + offset + ".");
+        }
+      } else {
+        try {
+          LiftRideMessageReader.forEach(properties, body, liftRide, apply);
+        } catch (RuntimeException e) {
+          System.err.println("!!! Skipping malformed ride at offset " + offset + ": " + e);
+        }
+      }
+    }
+    if (++unacked == ACK_EVERY) {
+      getChannel().basicAck(envelope.getDeliveryTag(), true); // acks only grant more credit
+      unacked = 0;
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package ski.resort.distributed.system.readmodel;
+
+import java.util.Arrays;
+
+/**
+ * A map from non-negative long keys to int counters, held in primitive arrays. Keys are split over
+ * independently locked stripes, each an open-addressing table with linear probing that doubles when
+ * half full, so one writer and many readers contend only when they hit the same stripe.
+ */
+class LongIntMap {
+
+  private static final int STRIPES = 64;
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  private final Stripe[] stripes = new Stripe[STRIPES];
+
+  LongIntMap(int initialCapacity) {
+    for (int i = 0; i < STRIPES; i++) stripes[i] = new Stripe(initialCapacity / STRIPES);
+  }
+
+  /** Adds {@code delta} to the value of {@code key}; returns true if the key was not there yet. */
+  boolean add(long key, int delta) {
+    final long h = mix(key);
+    return stripes[(int) (h >>> 58)].add(key, (int) h, delta);
+  }
+
+  /** Returns the value of {@code key}, or {@code absent} if it was never added. */
+  int get(long key, int absent) {
+    final long h = mix(key);
+    return stripes[(int) (h >>> 58)].get(key, (int) h, absent);
+  }
+
+  long size() {
+    long size = 0;
+    for (Stripe stripe : stripes) size += stripe.size();
+    return size;
+  }
+
+  /** The finalizer of MurmurHash3; packed ids share most of their bits, so they need spreading. */
+  static long mix(long key) {
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    return key ^ (key >>> 33);
+  }
+
+  private static final class Stripe {
+    private long[] keys;
+    private int[] values;
+    private int size;
+
+    Stripe(int capacity) {
+      final int slots = Integer.highestOneBit(Math.max(8, capacity * 2 - 1)) << 1;
+      keys = new long[slots];
+      values = new int[slots];
+      Arrays.fill(keys, EMPTY);
+    }
+
+    synchronized boolean add(long key, int hash, int delta) {
+      final int i = indexOf(keys, key, hash);
+      if (keys[i] == key) {
+        values[i] += delta;
+        return false;
+      }
+      keys[i] = key;
+      values[i] = delta;
+      if (++size * 2 > keys.length) grow();
+      return true;
+    }
+
+    synchronized int get(long key, int hash, int absent) {
+      final int i = indexOf(keys, key, hash);
+      return keys[i] == key ? values[i] : absent;
+    }
+
+    synchronized int size() {
+      return size;
+    }
+
+    private void grow() {
+      final long[] oldKeys = keys;
+      final int[] oldValues = values;
+      keys = new long[oldKeys.length * 2];
+      values = new int[oldKeys.length * 2];
+      Arrays.fill(keys, EMPTY);
+      for (int j = 0; j < oldKeys.length; j++) {
+        if (oldKeys[j] == EMPTY) continue;
+        final int i = indexOf(keys, oldKeys[j], (int) mix(oldKeys[j]));
+        keys[i] = oldKeys[j];
+        values[i] = oldValues[j];
+      }
+    }
+
+    /** Returns the slot holding {@code key}, or the empty slot where it would go. */
+    private static int indexOf(long[] keys, long key, int hash) {
+      final int mask = keys.length - 1;
+      int i = hash & mask;
+      while (keys[i] != EMPTY && keys[i] != key) i = (i + 1) & mask;
+      return i;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package ski.resort.distributed.system.readmodel;
+
+import java.util.Arrays;
+
+/**
+ * The request IDs of the last rides applied to the read model, so a ride that reaches the stream
+ * twice is counted once, as MySQL's unique request ID does. That happens with the spool's
+ * at-least-once replay and with retries that get past the Server's idempotency window, and for the
+ * rides replayed from before the snapshot the model started from, whose IDs are loaded first.
+ *
+ * <p>The window counts rides, not time: two generations of at most {@code capacity} keys each,
+ * the older dropped when the newer fills. It remembers between {@code capacity} and twice that many
+ * IDs. Used from the stream consumer's thread only.
+ */
+class RecentRequestIDs {
+
+  private final int capacity;
+  private long[] current;
+  private long[] previous;
+  private int size;
+
+  RecentRequestIDs(int capacity) {
+    this.capacity = capacity;
+    final int slots = Integer.highestOneBit(Math.max(1, capacity) * 2 - 1) << 1; // load <= 1/2
+    this.current = new long[slots];
+    this.previous = new long[slots];
+  }
+
+  /** Adds the key; returns false if it is already in the window. */
+  boolean add(long key) {
+    final long k = key == 0 ? 1 : key; // 0 marks an empty slot
+    if (contains(previous, k)) return false;
+    final int mask = current.length - 1;
+    int i = (int) LongIntMap.mix(k) & mask;
+    for (; current[i] != 0; i = (i + 1) & mask) {
+      if (current[i] == k) return false;
+    }
+    if (size == capacity) {
+      final long[] cleared = previous;
+      Arrays.fill(cleared, 0);
+      previous = current;
+      current = cleared;
+      size = 0;
+      return add(key);
+    }
+    current[i] = k;
+    size++;
+    return true;
+  }
+
+  private static boolean contains(long[] table, long k) {
+    final int mask = table.length - 1;
+    for (int i = (int) LongIntMap.mix(k) & mask; table[i] != 0; i = (i + 1) & mask) {
+      if (table[i] == k) return true;
+    }
+    return false;
+  }
+}
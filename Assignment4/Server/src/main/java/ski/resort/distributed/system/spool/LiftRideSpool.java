@@ -0,0 +1,294 @@
+package ski.resort.distributed.system.spool;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import ski.resort.distributed.system.codec.LiftRideFormat;
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.mq.BatchingPublisher;
+import ski.resort.distributed.system.mq.QueueShards;
+import ski.resort.distributed.system.mq.RabbitMQConnectionPool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+/**
+ * A local append-only spool for lift rides the broker cannot take right now. Rides are appended to
+ * memory-mapped {@link SpoolSegment} files and acknowledged once a group commit has flushed them to
+ * disk. A replay thread publishes them to their queues, oldest first, whenever RabbitMQ is
+ * available again, and deletes each segment once it has been fully replayed.
+ *
+ * <p>Appends only write to memory. Flushing, including that of a segment sealed because it is full,
+ * is left to the committer thread, so a POST never waits on the disk while holding the spool.
+ */
+public class LiftRideSpool implements AutoCloseable {
+
+  /** Where replayed rides go: RabbitMQ in production, a stand-in in tests. */
+  public interface Broker {
+    /** Returns true if a replay is worth trying now. */
+    boolean isAvailable();
+
+    /** Returns the queue a skier's rides are published to. */
+    String queueFor(int skierID);
+
+    /** Publishes one batch message per queue and waits for every confirm; false if any failed. */
+    boolean publish(Map<String, byte[]> batchByQueue) throws InterruptedException;
+  }
+
+  private final Path dir;
+  private final int segmentBytes;
+  private final int maxSegments;
+  private final long commitIntervalNanos;
+  private final LiftRideFormat format;
+  private final int replayBatchSize;
+  private final Broker broker;
+
+  private final Deque<SpoolSegment> segments = new ArrayDeque<>(); // guarded by this
+  private List<SpoolSegment> sealed = new ArrayList<>(); // full, not yet flushed; guarded by this
+  private List<CompletableFuture<Boolean>> uncommitted = new ArrayList<>(); // guarded by this
+  private long nextSequence; // guarded by this
+
+  private final Thread committer;
+  private final Thread replayer;
+
+  public LiftRideSpool(
+      Path dir,
+      int segmentBytes,
+      int maxSegments,
+      long commitIntervalMicros,
+      LiftRideFormat format,
+      int replayBatchSize,
+      long confirmTimeoutMillis)
+      throws IOException {
+    this(
+        dir,
+        segmentBytes,
+        maxSegments,
+        commitIntervalMicros,
+        format,
+        replayBatchSize,
+        new RabbitMQBroker(format, confirmTimeoutMillis));
+  }
+
+  public LiftRideSpool(
+      Path dir,
+      int segmentBytes,
+      int maxSegments,
+      long commitIntervalMicros,
+      LiftRideFormat format,
+      int replayBatchSize,
+      Broker broker)
+      throws IOException {
+    this.dir = dir;
+    this.segmentBytes = segmentBytes;
+    this.maxSegments = maxSegments;
+    this.commitIntervalNanos = TimeUnit.MICROSECONDS.toNanos(commitIntervalMicros);
+    this.format = format;
+    this.replayBatchSize = replayBatchSize;
+    this.broker = broker;
+
+    Files.createDirectories(dir);
+    recoverSegments();
+
+    committer = new Thread(this::runCommitter, "spool-committer");
+    replayer = new Thread(this::runReplayer, "spool-replayer");
+    committer.setDaemon(true);
+    replayer.setDaemon(true);
+    committer.start();
+    replayer.start();
+  }
+
+  private void recoverSegments() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      final List<Path> paths = new ArrayList<>();
+      files.filter(p -> p.getFileName().toString().endsWith(".seg")).sorted().forEach(paths::add);
+      for (Path path : paths) {
+        final String name = path.getFileName().toString();
+        final long sequence = Long.parseLong(name.substring(6, name.length() - 4));
+        final SpoolSegment segment = SpoolSegment.recover(path, sequence);
+        if (segment.pendingRecords() > 0) {
+          segments.addLast(segment);
+        } else {
+          segment.delete();
+        }
+        nextSequence = sequence + 1;
+      }
+    }
+    if (!segments.isEmpty()) {
+      System.out.println("Recovered " + pendingRecords() + " spooled lift rides to replay.");
+    }
+  }
+
+  /**
+   * Appends a ride to the spool. The future completes with {@code true} once the ride is on disk,
+   * or with {@code false} if the spool is full.
+   */
+  public synchronized CompletableFuture<Boolean> append(LiftRide liftRide) {
+    SpoolSegment segment = segments.peekLast();
+    if (segment == null || !segment.append(liftRide)) {
+      if (segments.size() >= maxSegments) return CompletableFuture.completedFuture(false);
+      if (segment != null) sealed.add(segment); // its waiters are durable at the next commit
+      try {
+        segment = SpoolSegment.create(dir, nextSequence++, segmentBytes);
+      } catch (IOException e) {
+        e.printStackTrace();
+        return CompletableFuture.completedFuture(false);
+      }
+      segments.addLast(segment);
+      segment.append(liftRide);
+    }
+
+    final CompletableFuture<Boolean> committed = new CompletableFuture<>();
+    uncommitted.add(committed);
+    notifyAll(); // wake the committer
+    return committed;
+  }
+
+  public synchronized int pendingRecords() {
+    return segments.stream().mapToInt(SpoolSegment::pendingRecords).sum();
+  }
+
+  @Override
+  public void close() {
+    committer.interrupt();
+    replayer.interrupt();
+  }
+
+  /** Group commit: one fsync per interval covers every ride appended since the last one. */
+  private void runCommitter() {
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        final SpoolSegment segment;
+        final List<SpoolSegment> sealing;
+        final List<CompletableFuture<Boolean>> committing;
+        synchronized (this) {
+          while (uncommitted.isEmpty()) wait();
+        }
+        TimeUnit.NANOSECONDS.sleep(commitIntervalNanos); // let more appends join this commit
+        synchronized (this) {
+          segment = segments.peekLast();
+          sealing = sealed;
+          sealed = new ArrayList<>();
+          committing = uncommitted;
+          uncommitted = new ArrayList<>();
+        }
+        // outside the lock, so appends go on while the disk catches up
+        for (SpoolSegment full : sealing) full.force();
+        if (segment != null) segment.force();
+        committing.forEach(f -> f.complete(true));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void runReplayer() {
+    final LiftRide liftRide = new LiftRide();
+    final Map<String, List<byte[]>> messagesByQueue = new HashMap<>();
+    final ByteArrayOutputStream scratch = new ByteArrayOutputStream();
+    try {
+      while (!Thread.currentThread().isInterrupted()) {
+        final SpoolSegment segment;
+        synchronized (this) {
+          segment = segments.peekFirst();
+        }
+        if (segment == null
+            || segment.pendingRecords() == 0
+            || !broker.isAvailable()
+            || !replay(segment, liftRide, messagesByQueue, scratch)) {
+          TimeUnit.MILLISECONDS.sleep(100); // nothing to do, or the broker is still away
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Publishes the next run of records from the segment. Returns false if nothing was replayed. */
+  private boolean replay(
+      SpoolSegment segment,
+      LiftRide liftRide,
+      Map<String, List<byte[]>> messagesByQueue,
+      ByteArrayOutputStream scratch)
+      throws InterruptedException {
+    final int from = segment.getReplayedOffset();
+    final int to =
+        Math.min(segment.getWriteOffset(), from + replayBatchSize * SpoolSegment.RECORD_BYTES);
+    messagesByQueue.clear();
+    for (int offset = from; offset < to; offset += SpoolSegment.RECORD_BYTES) {
+      segment.read(offset, liftRide);
+      messagesByQueue
+          .computeIfAbsent(broker.queueFor(liftRide.getSkierID()), q -> new ArrayList<>())
+          .add(format.encode(liftRide));
+    }
+    final Map<String, byte[]> batchByQueue = new HashMap<>();
+    for (Map.Entry<String, List<byte[]>> entry : messagesByQueue.entrySet()) {
+      batchByQueue.put(entry.getKey(), format.encodeBatch(entry.getValue(), scratch));
+    }
+    if (!broker.publish(batchByQueue)) return false;
+
+    segment.markReplayed(to);
+    synchronized (this) {
+      // a fully replayed segment that is no longer being appended to can go
+      if (segment.pendingRecords() == 0 && segment != segments.peekLast()) {
+        segments.removeFirst();
+        try {
+          segment.delete();
+        } catch (IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+    return true;
+  }
+
+  /** Publishes to the ride queues through the shared channel pool. */
+  private static class RabbitMQBroker implements Broker {
+    private final AMQP.BasicProperties batchProps;
+    private final long confirmTimeoutMillis;
+
+    RabbitMQBroker(LiftRideFormat format, long confirmTimeoutMillis) {
+      this.batchProps = BatchingPublisher.batchProperties(format);
+      this.confirmTimeoutMillis = confirmTimeoutMillis;
+    }
+
+    @Override
+    public boolean isAvailable() {
+      return RabbitMQConnectionPool.isAvailable();
+    }
+
+    @Override
+    public String queueFor(int skierID) {
+      return QueueShards.queueFor(skierID);
+    }
+
+    @Override
+    public boolean publish(Map<String, byte[]> batchByQueue) throws InterruptedException {
+      Channel channel = null;
+      try {
+        channel = RabbitMQConnectionPool.borrowChannel(confirmTimeoutMillis);
+        if (channel == null) return false;
+        for (Map.Entry<String, byte[]> entry : batchByQueue.entrySet()) {
+          channel.basicPublish(QueueShards.EXCHANGE, entry.getKey(), batchProps, entry.getValue());
+        }
+        return channel.waitForConfirms(confirmTimeoutMillis);
+      } catch (IOException | TimeoutException e) {
+        e.printStackTrace();
+        return false;
+      } finally {
+        if (channel != null) RabbitMQConnectionPool.returnChannel(channel);
+      }
+    }
+  }
+}
@@ -0,0 +1,144 @@
+package ski.resort.distributed.system.spool;
+
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One memory-mapped, fixed-size spool file. Lift rides are appended as fixed-width records and
+ * replayed from the front; how far replay has got is kept in the header, so both survive restarts.
+ *
+ * <pre>
+ * header (64 bytes): replayed offset (int64) | unused
+ * record (44 bytes): magic (int32) | skierID | resortID | seasonID | dayID | time | liftID
+ *                   | request ID (2 x int64, zero if none)
+ * </pre>
+ *
+ * The file is zero-filled when created, so the first position without the magic marks the end of
+ * the written records.
+ */
+class SpoolSegment {
+
+  static final int HEADER_BYTES = 64;
+  static final int RECORD_BYTES = 44;
+  private static final int MAGIC = 0x534B4931; // "SKI1"
+
+  private final long sequence;
+  private final Path path;
+  private final MappedByteBuffer buffer;
+  private volatile int writeOffset; // end of the appended records
+  private volatile int replayedOffset; // end of the records already published
+
+  private SpoolSegment(long sequence, Path path, MappedByteBuffer buffer) {
+    this.sequence = sequence;
+    this.path = path;
+    this.buffer = buffer;
+  }
+
+  static SpoolSegment create(Path dir, long sequence, int capacityBytes) throws IOException {
+    final SpoolSegment segment = open(dir.resolve(fileName(sequence)), sequence, capacityBytes);
+    segment.writeOffset = HEADER_BYTES;
+    segment.replayedOffset = HEADER_BYTES;
+    segment.buffer.putLong(0, HEADER_BYTES);
+    segment.buffer.force(0, HEADER_BYTES);
+    return segment;
+  }
+
+  /** Reopens a segment left by an earlier run and finds where its records end. */
+  static SpoolSegment recover(Path path, long sequence) throws IOException {
+    final SpoolSegment segment = open(path, sequence, (int) Files.size(path));
+    final MappedByteBuffer buf = segment.buffer;
+    int offset = HEADER_BYTES;
+    while (offset + RECORD_BYTES <= buf.capacity() && buf.getInt(offset) == MAGIC) {
+      offset += RECORD_BYTES;
+    }
+    segment.writeOffset = offset;
+    segment.replayedOffset = (int) Math.min(Math.max(buf.getLong(0), HEADER_BYTES), offset);
+    return segment;
+  }
+
+  private static SpoolSegment open(Path path, long sequence, int capacityBytes) throws IOException {
+    try (RandomAccessFile file = new RandomAccessFile(path.toFile(), "rw");
+        FileChannel channel = file.getChannel()) {
+      // the mapping stays valid after the channel is closed
+      return new SpoolSegment(
+          sequence, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacityBytes));
+    }
+  }
+
+  static String fileName(long sequence) {
+    return String.format("spool-%020d.seg", sequence);
+  }
+
+  /** Appends a record, or returns false if the segment is full. Callers serialize appends. */
+  boolean append(LiftRide liftRide) {
+    final int offset = writeOffset;
+    if (offset + RECORD_BYTES > buffer.capacity()) return false;
+    buffer.putInt(offset + 4, liftRide.getSkierID());
+    buffer.putInt(offset + 8, liftRide.getResortID());
+    buffer.putInt(offset + 12, liftRide.getSeasonID());
+    buffer.putInt(offset + 16, liftRide.getDayID());
+    buffer.putInt(offset + 20, liftRide.getTime());
+    buffer.putInt(offset + 24, liftRide.getLiftID());
+    buffer.putLong(offset + 28, liftRide.hasRequestID() ? liftRide.getRequestIDHigh() : 0);
+    buffer.putLong(offset + 36, liftRide.hasRequestID() ? liftRide.getRequestIDLow() : 0);
+    buffer.putInt(offset, MAGIC); // written last, so a torn record is never replayed
+    writeOffset = offset + RECORD_BYTES;
+    return true;
+  }
+
+  /** Flushes appended records to disk. */
+  void force() {
+    buffer.force(HEADER_BYTES, writeOffset - HEADER_BYTES);
+  }
+
+  /** Reads the record at {@code offset} into {@code out}. */
+  void read(int offset, LiftRide out) {
+    out.setPath(
+        buffer.getInt(offset + 8),
+        buffer.getInt(offset + 12),
+        buffer.getInt(offset + 16),
+        buffer.getInt(offset + 4));
+    out.setTime(buffer.getInt(offset + 20));
+    out.setLiftID(buffer.getInt(offset + 24));
+    final long requestIDHigh = buffer.getLong(offset + 28);
+    final long requestIDLow = buffer.getLong(offset + 36);
+    if (requestIDHigh == 0 && requestIDLow == 0) {
+      out.clearRequestID();
+    } else {
+      out.setRequestID(requestIDHigh, requestIDLow);
+    }
+  }
+
+  /** Records that everything before {@code offset} has been published, durably. */
+  void markReplayed(int offset) {
+    replayedOffset = offset;
+    buffer.putLong(0, offset);
+    buffer.force(0, HEADER_BYTES);
+  }
+
+  int getWriteOffset() {
+    return writeOffset;
+  }
+
+  int getReplayedOffset() {
+    return replayedOffset;
+  }
+
+  int pendingRecords() {
+    return (writeOffset - replayedOffset) / RECORD_BYTES;
+  }
+
+  long getSequence() {
+    return sequence;
+  }
+
+  void delete() throws IOException {
+    Files.deleteIfExists(path);
+  }
+}
@@ -1,6 +1,8 @@
 package ski.resort.distributed.system.utils;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import ski.resort.distributed.system.codec.LiftRideBinaryCodec;
+import ski.resort.distributed.system.codec.LiftRideFormat;
 
 public class Constants {
   private Constants() {}
@@ -9,11 +11,117 @@ public class Constants {
   public static final String DATABASE = "ski_resort_db";
   public static final String TABLE = "liftRides";
   public static final String TABLE_B = "resortSkiersCount";
+  public static final String TABLE_C = "resortSkierSets"; // skierIDs per resort day, as bitmaps
+  public static final String TABLE_D = "resortSkierSketches"; // HyperLogLogs per Consumer
+  public static final String TABLE_E = "skierDayVertical"; // kept by the Consumer
+  public static final String TABLE_F = "skierSeasonVertical"; // kept by the Consumer
 
-  // database configuration
+  // path parameter ranges
+  public static final int MIN_RESORT_ID = 1;
+  public static final int MAX_RESORT_ID = 10;
+  public static final String RESORT_ID_RANGE_MESSAGE =
+      "Resort ID must be between " + MIN_RESORT_ID + " and " + MAX_RESORT_ID;
+
+  // database configuration; the pool sizes apply to each read replica's pool
   public static final int INITIAL_POOL_SIZE = 100;
   public static final int MAX_TOTAL_CONNECTIONS = 450; // 128 * 3 = 384 threads
   public static final int MAX_IDLE_CONNECTIONS = 300;
   public static final int MIN_IDLE_CONNECTIONS = 100;
   public static final int MAX_WAIT_MILLIS = 2000; // wait time when connection exhausts
+  public static final int MAX_PRIMARY_CONNECTIONS =
+      Integer.parseInt(DOTENV.get("MAX_PRIMARY_CONNECTIONS", "8")); // opened on demand only
+  public static final long REPLICA_HEALTH_CHECK_MILLIS = 5000;
+  public static final long MAX_REPLICA_LAG_SECONDS =
+      Long.parseLong(DOTENV.get("MAX_REPLICA_LAG_SECONDS", "30")); // ejected beyond this
+  public static final int STATEMENT_CACHE_SIZE =
+      Integer.parseInt(DOTENV.get("STATEMENT_CACHE_SIZE", "16")); // per connection; 0 disables
+
+  // unique skiers per resort day: "exact" counts or merged "hll" sketches; must match the Consumer
+  public static final String UNIQUE_SKIERS_MODE_HLL = "hll";
+  public static final String UNIQUE_SKIERS_MODE = DOTENV.get("UNIQUE_SKIERS_MODE", "exact");
+
+  // read-through caches for the vertical GETs; a TTL of 0 disables them
+  public static final long VERTICAL_CACHE_MAX_ENTRIES =
+      Long.parseLong(DOTENV.get("VERTICAL_CACHE_MAX_ENTRIES", "100000"));
+  public static final long VERTICAL_CACHE_TTL_MILLIS =
+      Long.parseLong(DOTENV.get("VERTICAL_CACHE_TTL_MILLIS", "5000")); // bounds staleness
+  // how long an uncached GET query's result is shared with callers arriving after it completes
+  public static final long SINGLE_FLIGHT_HOLD_MILLIS =
+      Long.parseLong(DOTENV.get("SINGLE_FLIGHT_HOLD_MILLIS", "0"));
+
+  // RabbitMQ configuration
+  public static final String EXCHANGE_NAME = "SkierServletPostExchange";
+  public static final String QUEUE_NAME = "SkierServletPostQueue";
+  public static final int NUM_CONNECTIONS =
+      Integer.parseInt(DOTENV.get("NUM_CONNECTIONS", "4")); // channels are spread over these
+  public static final int NUM_CHANNEL = Integer.parseInt(DOTENV.get("NUM_CHANNEL", "50"));
+  public static final int NUM_QUEUE_SHARDS =
+      Integer.parseInt(DOTENV.get("NUM_QUEUE_SHARDS", "1")); // must match the Consumer
+
+  // POST publishing configuration
+  public static final String POST_MODE_SYNC = "sync"; // block on waitForConfirms() per POST
+  public static final String POST_MODE_ASYNC = "async"; // complete POSTs on broker confirm
+  public static final String POST_MODE_BATCH = "batch"; // coalesce POSTs into batched messages
+  public static final String POST_MODE = DOTENV.get("POST_MODE", POST_MODE_SYNC);
+  public static final int NUM_ASYNC_CHANNEL = 8; // confirms are pipelined, so few are needed
+  public static final long CONFIRM_TIMEOUT_MILLIS = 5000;
+  public static final long CHANNEL_WAIT_MILLIS =
+      Long.parseLong(DOTENV.get("CHANNEL_WAIT_MILLIS", "200")); // bounded wait for a channel
+  public static final int MAX_IN_FLIGHT_PUBLISHES =
+      Integer.parseInt(DOTENV.get("MAX_IN_FLIGHT_PUBLISHES", "2000")); // beyond this, 429
+  public static final long MAX_AVG_CHANNEL_WAIT_MILLIS =
+      Long.parseLong(DOTENV.get("MAX_AVG_CHANNEL_WAIT_MILLIS", "50")); // beyond this, 503
+  public static final int RETRY_AFTER_SECONDS = 1;
+  public static final long RECONNECT_INTERVAL_MILLIS = 5000;
+
+  // in-memory read model for the GETs, loaded from MySQL and kept current from a RabbitMQ stream
+  public static final boolean READ_MODEL_ENABLED =
+      Boolean.parseBoolean(DOTENV.get("READ_MODEL", "false")); // needs RabbitMQ 3.9 or later
+  public static final String READ_MODEL_STREAM = "LiftRideStream";
+  public static final long READ_MODEL_STREAM_MAX_BYTES =
+      Long.parseLong(DOTENV.get("READ_MODEL_STREAM_MAX_BYTES", "20000000000")); // 20 GB
+  public static final int READ_MODEL_PREFETCH = 2000;
+  public static final int READ_MODEL_INITIAL_CAPACITY = 1 << 16;
+  public static final int READ_MODEL_DEDUP_WINDOW =
+      Integer.parseInt(DOTENV.get("READ_MODEL_DEDUP_WINDOW", "1000000")); // rides, not seconds
+  public static final long READ_MODEL_SNAPSHOT_OVERLAP_MILLIS =
+      Long.parseLong(DOTENV.get("READ_MODEL_SNAPSHOT_OVERLAP_MILLIS", "60000")); // > Consumer lag
+
+  // Netty ingest front end for lift-ride POSTs, next to the servlets; disabled when 0
+  public static final int INGEST_PORT = Integer.parseInt(DOTENV.get("INGEST_PORT", "0"));
+  public static final int NUM_INGEST_EVENT_LOOPS =
+      Integer.parseInt(DOTENV.get("NUM_INGEST_EVENT_LOOPS", "0")); // 0: Netty's default, 2 x cores
+
+  // recently confirmed idempotency keys, answered without publishing again
+  public static final int IDEMPOTENCY_WINDOW_SECONDS =
+      Integer.parseInt(DOTENV.get("IDEMPOTENCY_WINDOW_SECONDS", "60"));
+  public static final int IDEMPOTENCY_BUCKETS = 6;
+  public static final int IDEMPOTENCY_MAX_KEYS_PER_BUCKET = 1 << 17; // ~2 MB per bucket
+
+  // local spool for POSTs while RabbitMQ is down or overloaded; disabled when SPOOL_DIR is empty
+  public static final String SPOOL_DIR = DOTENV.get("SPOOL_DIR", "");
+  public static final int SPOOL_SEGMENT_BYTES = 16 * 1024 * 1024;
+  public static final int SPOOL_MAX_SEGMENTS = 64;
+  public static final long SPOOL_COMMIT_INTERVAL_MICROS =
+      Long.parseLong(DOTENV.get("SPOOL_COMMIT_INTERVAL_MICROS", "1000")); // group commit window
+  public static final int SPOOL_REPLAY_BATCH_SIZE = 500;
+  public static final LiftRideFormat MESSAGE_FORMAT =
+      LiftRideFormat.valueOf(DOTENV.get("MESSAGE_FORMAT", "json").toUpperCase());
+  public static final int NUM_BATCH_FLUSHERS = 4;
+  public static final int BATCH_MAX_SIZE = batchMaxSize(DOTENV.get("BATCH_MAX_SIZE", "100"));
+  public static final long BATCH_MAX_DELAY_MICROS =
+      Long.parseLong(DOTENV.get("BATCH_MAX_DELAY_MICROS", "500"));
+  public static final int BULK_MAX_RIDES = 10000; // per bulk POST
+  public static final int BULK_RIDES_PER_MESSAGE = 1000;
+  public static final int BATCH_VERTICAL_MAX_SKIERS = 1000; // per batch vertical GET
+
+  /** Fails startup on a batch size the binary format's 16-bit record count could not hold. */
+  private static int batchMaxSize(String value) {
+    final int size = Integer.parseInt(value);
+    if (size < 1 || size > LiftRideBinaryCodec.MAX_RECORDS) {
+      throw new IllegalArgumentException(
+          "BATCH_MAX_SIZE must be between 1 and " + LiftRideBinaryCodec.MAX_RECORDS + ": " + size);
+    }
+    return size;
+  }
 }
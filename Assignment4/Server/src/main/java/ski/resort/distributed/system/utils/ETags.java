@@ -0,0 +1,45 @@
+package ski.resort.distributed.system.utils;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Conditional GETs on the read model's versions. A response carries its version as an {@code
+ * ETag}; a poll that sends it back in {@code If-None-Match} while the version is unchanged gets an
+ * empty {@code 304}, before any lookup or JSON is done.
+ */
+public class ETags {
+
+  private static final String IF_NONE_MATCH = "If-None-Match";
+  private static final String WEAK_PREFIX = "W/";
+
+  private ETags() {}
+
+  /**
+   * Sets the {@code ETag} of a version and answers {@code 304} if the client already has it.
+   * Returns true if the response is complete. Clients are asked to revalidate on every use.
+   */
+  public static boolean notModified(HttpServletRequest req, HttpServletResponse res, int version) {
+    final String etag = "\"" + version + '"';
+    res.setHeader("ETag", etag);
+    res.setHeader("Cache-Control", "no-cache");
+    if (!matches(req.getHeader(IF_NONE_MATCH), etag)) return false;
+    res.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+    return true;
+  }
+
+  /** The weak comparison If-None-Match calls for: {@code W/} prefixes are ignored. */
+  static boolean matches(String ifNoneMatch, String etag) {
+    if (ifNoneMatch == null) return false;
+    int start = 0;
+    while (start < ifNoneMatch.length()) {
+      int end = ifNoneMatch.indexOf(',', start);
+      if (end < 0) end = ifNoneMatch.length();
+      String tag = ifNoneMatch.substring(start, end).trim();
+      if (tag.startsWith(WEAK_PREFIX)) tag = tag.substring(WEAK_PREFIX.length());
+      if (tag.equals("*") || tag.equals(etag)) return true;
+      start = end + 1;
+    }
+    return false;
+  }
+}
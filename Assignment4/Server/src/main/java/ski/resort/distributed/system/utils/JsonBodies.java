@@ -0,0 +1,85 @@
+package ski.resort.distributed.system.utils;
+
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes the GETs' small response bodies as bytes straight to the servlet's output stream, with
+ * their {@code Content-Length} set. A numeric body such as {@code {"totalVertical":1234}} is a
+ * pre-encoded prefix followed by the digits, formatted into a buffer kept per thread, so no {@code
+ * JSONObject}, String or writer is created per GET. Constant bodies, such as the error messages,
+ * are encoded once.
+ *
+ * <p>A response must not mix these with {@code getWriter()}.
+ */
+public class JsonBodies {
+
+  private static final int MAX_INT_DIGITS = 11; // "-2147483648"
+  private static final int BUFFER_BYTES = 64;
+  private static final int MAX_PREFIX_BYTES = BUFFER_BYTES - MAX_INT_DIGITS - 1;
+  private static final ThreadLocal<byte[]> BUFFER =
+      ThreadLocal.withInitial(() -> new byte[BUFFER_BYTES]);
+
+  private JsonBodies() {}
+
+  /** Encodes a body that never changes. */
+  public static byte[] constant(String body) {
+    return body.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /** Encodes the {@code {"name":} prefix of an object with a single int field. */
+  public static byte[] intField(String name) {
+    final byte[] prefix = constant("{\"" + name + "\":");
+    if (prefix.length > MAX_PREFIX_BYTES) {
+      throw new IllegalArgumentException("Field name too long: " + name);
+    }
+    return prefix;
+  }
+
+  /** Writes a constant body with the given status. */
+  public static void write(HttpServletResponse res, int status, byte[] body) throws IOException {
+    res.setStatus(status);
+    res.setContentLength(body.length);
+    res.getOutputStream().write(body);
+  }
+
+  /** Writes {@code {"name":value}} with status 200, {@code prefix} being from {@link #intField}. */
+  public static void writeInt(HttpServletResponse res, byte[] prefix, int value)
+      throws IOException {
+    final byte[] buffer = BUFFER.get();
+    final int length = format(buffer, prefix, value);
+    res.setStatus(HttpServletResponse.SC_OK);
+    res.setContentLength(length);
+    res.getOutputStream().write(buffer, 0, length);
+  }
+
+  /** Formats the body into {@code buffer} and returns its length. */
+  static int format(byte[] buffer, byte[] prefix, int value) {
+    System.arraycopy(prefix, 0, buffer, 0, prefix.length);
+    int pos = prefix.length;
+    long remaining = value; // as a long, so Integer.MIN_VALUE can be negated
+    if (remaining < 0) {
+      buffer[pos++] = '-';
+      remaining = -remaining;
+    }
+    final int numDigits = numDigits(remaining);
+    int end = pos + numDigits;
+    do {
+      buffer[--end] = (byte) ('0' + remaining % 10);
+      remaining /= 10;
+    } while (remaining != 0);
+    pos += numDigits;
+    buffer[pos++] = '}';
+    return pos;
+  }
+
+  private static int numDigits(long value) {
+    int digits = 1;
+    while (value >= 10) {
+      value /= 10;
+      digits++;
+    }
+    return digits;
+  }
+}
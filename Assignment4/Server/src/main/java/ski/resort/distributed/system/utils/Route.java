@@ -0,0 +1,131 @@
+package ski.resort.distributed.system.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A URL path template such as {@code /{resortID}/seasons/{seasonID}/day/{dayID}/skiers}, matched in
+ * a single pass over the path. Path parameters are parsed straight into the caller's {@link
+ * RouteMatch}, so matching allocates nothing: no regex, no {@code split}, no boxed integers.
+ */
+public class Route {
+
+  /** Outcome of matching a path, from best to worst. */
+  public enum Result {
+    MATCH,
+    OUT_OF_RANGE, // right shape, but a parameter is outside its allowed range
+    BAD_NUMBER, // right shape, but a parameter is not a number
+    NO_MATCH // different number of segments or a literal segment differs
+  }
+
+  private final String[] literals; // null where the segment is a parameter
+  private final int[] min;
+  private final int[] max;
+
+  private Route(String[] literals, int[] min, int[] max) {
+    this.literals = literals;
+    this.min = min;
+    this.max = max;
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  /**
+   * Matches the path against this route, storing parameters in declaration order in {@code out}. A
+   * single trailing slash is ignored, as {@code String.split} used to do, so {@code /a/} has one
+   * segment, not an empty second one.
+   */
+  public Result match(final String path, final RouteMatch out) {
+    return match(path, 0, path == null ? 0 : path.length(), out);
+  }
+
+  /**
+   * Matches {@code path[from, to)} against this route, e.g. a request URI past its servlet prefix
+   * and before its query string, without taking a substring.
+   */
+  public Result match(final String path, final int from, final int to, final RouteMatch out) {
+    out.reset();
+    if (path == null) return Result.NO_MATCH;
+
+    final int len = to;
+    boolean badNumber = false;
+    boolean outOfRange = false;
+    int pos = from;
+    for (int seg = 0; seg < literals.length; seg++) {
+      // an empty last segment is a trailing slash, so the path is one segment short
+      if (pos >= len - 1 || path.charAt(pos) != '/') return Result.NO_MATCH;
+      final int start = pos + 1;
+      int end = path.indexOf('/', start);
+      if (end < 0 || end > len) end = len;
+
+      final String literal = literals[seg];
+      if (literal != null) {
+        if (end - start != literal.length() || !path.regionMatches(start, literal, 0, end - start)) {
+          return Result.NO_MATCH;
+        }
+      } else {
+        final long value = parseNonNegativeInt(path, start, end);
+        if (value < 0) {
+          badNumber = true;
+        } else if (value < min[seg] || value > max[seg]) {
+          outOfRange = true;
+        }
+        out.add((int) value);
+      }
+      pos = end;
+    }
+
+    if (pos < len && !(pos == len - 1 && path.charAt(pos) == '/')) return Result.NO_MATCH;
+    if (badNumber) return Result.BAD_NUMBER;
+    return outOfRange ? Result.OUT_OF_RANGE : Result.MATCH;
+  }
+
+  /** Returns the value of {@code s[start, end)}, or -1 if it is not an int of plain digits. */
+  private static long parseNonNegativeInt(final String s, final int start, final int end) {
+    if (start == end || end - start > 10) return -1;
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      final int digit = s.charAt(i) - '0';
+      if (digit < 0 || digit > 9) return -1;
+      value = value * 10 + digit;
+    }
+    return value <= Integer.MAX_VALUE ? value : -1;
+  }
+
+  /** Builds a route segment by segment, e.g. {@code .param(1, 10).literal("seasons")}. */
+  public static class Builder {
+    private final List<String> literals = new ArrayList<>();
+    private final List<int[]> ranges = new ArrayList<>();
+
+    public Builder literal(String segment) {
+      literals.add(segment);
+      ranges.add(null);
+      return this;
+    }
+
+    public Builder param() {
+      return param(0, Integer.MAX_VALUE);
+    }
+
+    public Builder param(int min, int max) {
+      literals.add(null);
+      ranges.add(new int[] {min, max});
+      return this;
+    }
+
+    public Route build() {
+      final int n = literals.size();
+      final int[] min = new int[n];
+      final int[] max = new int[n];
+      for (int i = 0; i < n; i++) {
+        if (ranges.get(i) != null) {
+          min[i] = ranges.get(i)[0];
+          max[i] = ranges.get(i)[1];
+        }
+      }
+      return new Route(literals.toArray(new String[0]), min, max);
+    }
+  }
+}
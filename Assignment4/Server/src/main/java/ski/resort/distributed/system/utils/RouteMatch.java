@@ -0,0 +1,33 @@
+package ski.resort.distributed.system.utils;
+
+/**
+ * Path parameters captured by {@link Route#match}. One instance is kept per thread and reused for
+ * every request that thread serves, so callers must read the values before matching again.
+ */
+public class RouteMatch {
+
+  private static final int MAX_PARAMS = 8;
+  private static final ThreadLocal<RouteMatch> CURRENT = ThreadLocal.withInitial(RouteMatch::new);
+
+  private final int[] params = new int[MAX_PARAMS];
+  private int size;
+
+  /** Returns this thread's reusable match. */
+  public static RouteMatch current() {
+    return CURRENT.get();
+  }
+
+  /** Returns the i-th parameter of the matched route, in declaration order. */
+  public int get(int i) {
+    if (i >= size) throw new IndexOutOfBoundsException("No path parameter " + i);
+    return params[i];
+  }
+
+  void reset() {
+    size = 0;
+  }
+
+  void add(int value) {
+    params[size++] = value;
+  }
+}
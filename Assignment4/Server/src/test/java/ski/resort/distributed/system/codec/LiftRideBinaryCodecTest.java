@@ -0,0 +1,111 @@
+package ski.resort.distributed.system.codec;
+
+import com.rabbitmq.client.AMQP;
+import org.junit.jupiter.api.Test;
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiftRideBinaryCodecTest {
+
+  private static final AMQP.BasicProperties BINARY_PROPS =
+      new AMQP.BasicProperties.Builder().contentType(LiftRideBinaryCodec.CONTENT_TYPE).build();
+
+  @Test
+  void encodesARideWithoutARequestID() {
+    final LiftRide written = ride();
+    final byte[] message = LiftRideBinaryCodec.encode(written);
+
+    assertEquals(
+        LiftRideBinaryCodec.HEADER_BYTES + LiftRideBinaryCodec.RECORD_BYTES, message.length);
+    assertFalse(LiftRideBinaryCodec.hasRequestID(message));
+    final LiftRide read = readOne(message);
+    assertEquals(written.toString(), read.toString());
+    assertFalse(read.hasRequestID());
+  }
+
+  @Test
+  void encodesARideWithARequestID() {
+    final LiftRide written = ride().setRequestID(Long.MIN_VALUE, 0x0123456789abcdefL);
+    final byte[] message = LiftRideBinaryCodec.encode(written);
+
+    assertEquals(
+        LiftRideBinaryCodec.HEADER_BYTES
+            + LiftRideBinaryCodec.RECORD_BYTES
+            + LiftRideBinaryCodec.REQUEST_ID_BYTES,
+        message.length);
+    assertTrue(LiftRideBinaryCodec.hasRequestID(message));
+    final LiftRide read = readOne(message);
+    assertEquals(written.toString(), read.toString());
+    assertEquals(Long.MIN_VALUE, read.getRequestIDHigh());
+    assertEquals(0x0123456789abcdefL, read.getRequestIDLow());
+  }
+
+  @Test
+  void rejectsMalformedMessages() {
+    final byte[] message = LiftRideBinaryCodec.encode(ride());
+
+    assertThrows(IllegalArgumentException.class, () -> readOne(new byte[0]));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> readOne(Arrays.copyOf(message, message.length - 1)));
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> readOne(Arrays.copyOf(message, message.length + 1)));
+
+    final byte[] newerVersion = message.clone();
+    newerVersion[0] = LiftRideBinaryCodec.VERSION + 1;
+    assertThrows(IllegalArgumentException.class, () -> readOne(newerVersion));
+  }
+
+  @Test
+  void rejectsMoreRecordsThanTheHeaderCounts() {
+    final byte[] header = new byte[LiftRideBinaryCodec.HEADER_BYTES];
+    LiftRideBinaryCodec.putHeader(header, 0, LiftRideBinaryCodec.MAX_RECORDS, (byte) 0);
+    assertEquals((byte) 0xFF, header[2]);
+    assertEquals((byte) 0xFF, header[3]);
+    assertThrows(
+        IllegalArgumentException.class,
+        () ->
+            LiftRideBinaryCodec.putHeader(
+                header, 0, LiftRideBinaryCodec.MAX_RECORDS + 1, (byte) 0));
+  }
+
+  private static LiftRide ride() {
+    final LiftRide liftRide = new LiftRide().setPath(10, 2024, 366, Integer.MAX_VALUE);
+    liftRide.setTime(-1);
+    liftRide.setLiftID(Integer.MIN_VALUE);
+    return liftRide;
+  }
+
+  private static LiftRide readOne(byte[] message) {
+    final List<LiftRide> read = new ArrayList<>();
+    LiftRideMessageReader.forEach(
+        BINARY_PROPS, message, new LiftRide(), liftRide -> read.add(copy(liftRide)));
+    assertEquals(1, read.size());
+    return read.get(0);
+  }
+
+  private static LiftRide copy(LiftRide liftRide) {
+    final LiftRide copy =
+        new LiftRide()
+            .setPath(
+                liftRide.getResortID(),
+                liftRide.getSeasonID(),
+                liftRide.getDayID(),
+                liftRide.getSkierID());
+    copy.setTime(liftRide.getTime());
+    copy.setLiftID(liftRide.getLiftID());
+    if (liftRide.hasRequestID()) {
+      copy.setRequestID(liftRide.getRequestIDHigh(), liftRide.getRequestIDLow());
+    }
+    return copy;
+  }
+}
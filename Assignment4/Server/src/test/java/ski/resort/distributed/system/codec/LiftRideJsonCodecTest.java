@@ -0,0 +1,104 @@
+package ski.resort.distributed.system.codec;
+
+import com.rabbitmq.client.AMQP;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import ski.resort.distributed.system.models.LiftRide;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiftRideJsonCodecTest {
+
+  private static final AMQP.BasicProperties JSON_PROPS = new AMQP.BasicProperties.Builder().build();
+
+  @Test
+  void readsTimeAndLiftID() throws IOException {
+    final LiftRide liftRide = new LiftRide();
+    assertTrue(read("{\"time\": 217, \"liftID\": 21}", liftRide));
+    assertEquals(217, liftRide.getTime());
+    assertEquals(21, liftRide.getLiftID());
+  }
+
+  @Test
+  void skipsOtherMembersAndWhitespace() throws IOException {
+    final LiftRide liftRide = new LiftRide();
+    final String body =
+        "\r\n{ \"note\" : \"a \\\"quoted\\\" }\", \"tags\": [1, {\"a\": [2]}], \"ok\": true,\n"
+            + "\t\"liftID\": \"-3\", \"extra\": null, \"time\": 0 }  ";
+    assertTrue(read(body, liftRide));
+    assertEquals(0, liftRide.getTime());
+    assertEquals(-3, liftRide.getLiftID());
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "",
+        "{}",
+        "[]",
+        "{\"time\": 1}",
+        "{\"liftID\": 1}",
+        "{\"time\": 1, \"liftID\": 1.5}",
+        "{\"time\": 1, \"liftID\": \"x\"}",
+        "{\"time\": 1, \"liftID\": 2147483648}",
+        "{\"time\": 1, \"liftID\": 2,}",
+        "{\"time\": 1, \"liftID\": 2} {}",
+        "{\"time\": 1, \"liftID\": 2",
+        "{\"time\": 1, \"liftID\": 2, \"note\": \"unterminated}",
+        "{\"time\": 1, \"liftID\": 2, \"tags\": [1, 2}",
+        "{time: 1, liftID: 2}"
+      })
+  void rejectsMalformedBodies(String body) throws IOException {
+    assertFalse(read(body, new LiftRide()), body);
+  }
+
+  @Test
+  void acceptsABodyOfExactlyTheLimit() throws IOException {
+    final String body = pad("{\"time\": 1, \"liftID\": 2}", LiftRideJsonCodec.MAX_BODY_BYTES);
+    assertTrue(read(body, new LiftRide()));
+    assertFalse(read(body + " ", new LiftRide()));
+  }
+
+  @Test
+  void encodesWhatTheMessageReaderDecodes() {
+    final LiftRide written = new LiftRide().setPath(10, 2024, 366, Integer.MAX_VALUE);
+    written.setTime(-1);
+    written.setLiftID(Integer.MIN_VALUE);
+    assertRoundTrips(written);
+    assertRoundTrips(written.setRequestID(0x0123456789abcdefL, -1L));
+  }
+
+  private static void assertRoundTrips(LiftRide written) {
+    final List<String> read = new ArrayList<>();
+    final List<Long> requestIDs = new ArrayList<>();
+    LiftRideMessageReader.forEach(
+        JSON_PROPS,
+        LiftRideJsonCodec.encode(written),
+        new LiftRide(),
+        liftRide -> {
+          read.add(liftRide.toString());
+          requestIDs.add(liftRide.getRequestIDHigh());
+          requestIDs.add(liftRide.getRequestIDLow());
+        });
+    assertEquals(List.of(written.toString()), read);
+    assertEquals(List.of(written.getRequestIDHigh(), written.getRequestIDLow()), requestIDs);
+  }
+
+  private static boolean read(String body, LiftRide liftRide) throws IOException {
+    return LiftRideJsonCodec.readBody(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), liftRide);
+  }
+
+  private static String pad(String body, int length) {
+    return body + " ".repeat(length - body.length());
+  }
+}
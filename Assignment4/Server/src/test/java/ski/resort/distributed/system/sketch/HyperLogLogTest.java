@@ -0,0 +1,75 @@
+package ski.resort.distributed.system.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads a sketch written by the Consumer's copy of this class: skiers 1 to 10,000 at precision 12,
+ * the same file the Consumer's test checks its output against.
+ */
+class HyperLogLogTest {
+
+  private static final String CONSUMER_SKETCH = "consumer-p12-skiers-1-10000.hll";
+  private static final int SKIERS = 10_000;
+
+  @Test
+  void readsTheConsumersSketch() throws IOException {
+    final byte[] written = consumerSketch();
+    final HyperLogLog read = HyperLogLog.fromBytes(written);
+
+    assertEquals(12, read.getPrecision());
+    assertTrue(Math.abs(read.estimate() - SKIERS) < 4 * 1.04 / 64 * SKIERS, "" + read.estimate());
+    assertArrayEquals(written, read.toBytes());
+  }
+
+  @Test
+  void hashesSkiersAsTheConsumerDoes() throws IOException {
+    final HyperLogLog sketch = new HyperLogLog(12);
+    for (int skierID = 1; skierID <= SKIERS; skierID++) sketch.add(skierID);
+
+    assertArrayEquals(consumerSketch(), sketch.toBytes());
+  }
+
+  @Test
+  void mergesTheConsumersSketchWithALowerPrecisionOne() throws IOException {
+    final HyperLogLog consumer = HyperLogLog.fromBytes(consumerSketch());
+    final HyperLogLog other = new HyperLogLog(10);
+    final HyperLogLog expected = new HyperLogLog(10);
+    for (int skierID = 1; skierID <= 2 * SKIERS; skierID++) {
+      if (skierID > SKIERS / 2) other.add(skierID);
+      expected.add(skierID);
+    }
+
+    // as the Server merges rows of different precisions: reduce to the lowest first
+    final HyperLogLog merged = consumer.reduce(10);
+    merged.merge(other);
+    assertEquals(expected.estimate(), merged.estimate());
+  }
+
+  @Test
+  void rejectsMalformedSketches() throws IOException {
+    final byte[] written = consumerSketch();
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> HyperLogLog.fromBytes(Arrays.copyOf(written, written.length - 1)));
+    assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(new byte[0]));
+
+    final byte[] badPrecision = written.clone();
+    badPrecision[0] = (byte) (HyperLogLog.MAX_PRECISION + 1);
+    assertThrows(IllegalArgumentException.class, () -> HyperLogLog.fromBytes(badPrecision));
+  }
+
+  private byte[] consumerSketch() throws IOException {
+    try (InputStream in = getClass().getResourceAsStream(CONSUMER_SKETCH)) {
+      return in.readAllBytes();
+    }
+  }
+}
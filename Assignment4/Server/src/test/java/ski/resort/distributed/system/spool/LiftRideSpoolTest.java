@@ -0,0 +1,226 @@
+package ski.resort.distributed.system.spool;
+
+import com.rabbitmq.client.AMQP;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ski.resort.distributed.system.codec.LiftRideFormat;
+import ski.resort.distributed.system.codec.LiftRideMessageReader;
+import ski.resort.distributed.system.models.LiftRide;
+import ski.resort.distributed.system.mq.BatchingPublisher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LiftRideSpoolTest {
+
+  private static final int RIDES_PER_SEGMENT = 4;
+  private static final int SEGMENT_BYTES =
+      SpoolSegment.HEADER_BYTES + RIDES_PER_SEGMENT * SpoolSegment.RECORD_BYTES;
+  private static final int MAX_SEGMENTS = 3;
+  private static final LiftRideFormat FORMAT = LiftRideFormat.BINARY;
+  private static final AMQP.BasicProperties BATCH_PROPS = BatchingPublisher.batchProperties(FORMAT);
+
+  @TempDir Path dir;
+
+  private final StandInBroker broker = new StandInBroker();
+  private final List<LiftRideSpool> spools = new ArrayList<>();
+
+  @AfterEach
+  void closeSpools() {
+    spools.forEach(LiftRideSpool::close);
+  }
+
+  @Test
+  void commitsRidesAcrossSegments() throws Exception {
+    final LiftRideSpool spool = open(2);
+    final List<CompletableFuture<Boolean>> committed = appendAll(spool, 1, 10);
+
+    for (CompletableFuture<Boolean> future : committed) {
+      assertTrue(future.get(5, TimeUnit.SECONDS));
+    }
+    assertEquals(10, spool.pendingRecords());
+    assertEquals(3, segmentFiles());
+    assertTrue(broker.rides.isEmpty());
+  }
+
+  @Test
+  void refusesRidesOnceFull() throws Exception {
+    final LiftRideSpool spool = open(2);
+    final int capacity = RIDES_PER_SEGMENT * MAX_SEGMENTS;
+    appendCommitted(spool, 1, capacity);
+
+    assertFalse(spool.append(ride(capacity + 1)).get(5, TimeUnit.SECONDS));
+    assertEquals(capacity, spool.pendingRecords());
+  }
+
+  @Test
+  void replaysRidesOnceTheBrokerReturns() throws Exception {
+    final LiftRideSpool spool = open(3);
+    appendCommitted(spool, 1, 10);
+    TimeUnit.MILLISECONDS.sleep(300);
+    assertTrue(broker.rides.isEmpty(), "nothing is replayed while the broker is away");
+
+    broker.available = true;
+    await(() -> spool.pendingRecords() == 0);
+
+    assertEquals(expectedRides(1, 10), sorted(broker.rides));
+    assertEquals(1, segmentFiles(), "fully replayed segments are deleted");
+  }
+
+  @Test
+  void retriesAFailedReplay() throws Exception {
+    final LiftRideSpool spool = open(3);
+    appendCommitted(spool, 1, 6);
+
+    broker.failures.set(2);
+    broker.available = true;
+    await(() -> spool.pendingRecords() == 0);
+
+    assertEquals(0, broker.failures.get());
+    assertEquals(expectedRides(1, 6), sorted(broker.rides));
+  }
+
+  @Test
+  void recoversUnreplayedRidesAfterARestart() throws Exception {
+    final LiftRideSpool first = open(3);
+    appendCommitted(first, 1, 6);
+    first.close();
+
+    final LiftRideSpool second = open(3);
+    assertEquals(6, second.pendingRecords());
+    appendCommitted(second, 7, 8);
+
+    broker.available = true;
+    await(() -> second.pendingRecords() == 0);
+    assertEquals(expectedRides(1, 8), sorted(broker.rides));
+  }
+
+  @Test
+  void doesNotReplayRidesTwiceAfterARestart() throws Exception {
+    final LiftRideSpool first = open(3);
+    appendCommitted(first, 1, 6);
+    broker.available = true;
+    await(() -> first.pendingRecords() == 0);
+    first.close();
+    broker.available = false;
+
+    final LiftRideSpool second = open(3);
+    assertEquals(0, second.pendingRecords());
+    appendCommitted(second, 7, 7);
+    broker.available = true;
+    await(() -> second.pendingRecords() == 0);
+
+    assertEquals(expectedRides(1, 7), sorted(broker.rides));
+  }
+
+  private LiftRideSpool open(int replayBatchSize) throws IOException {
+    final LiftRideSpool spool =
+        new LiftRideSpool(dir, SEGMENT_BYTES, MAX_SEGMENTS, 100, FORMAT, replayBatchSize, broker);
+    spools.add(spool);
+    return spool;
+  }
+
+  /** Appends rides {@code from..to} and waits until all are on disk. */
+  private static void appendCommitted(LiftRideSpool spool, int from, int to) throws Exception {
+    for (CompletableFuture<Boolean> future : appendAll(spool, from, to)) {
+      assertTrue(future.get(5, TimeUnit.SECONDS));
+    }
+  }
+
+  private static List<CompletableFuture<Boolean>> appendAll(LiftRideSpool spool, int from, int to) {
+    final List<CompletableFuture<Boolean>> committed = new ArrayList<>();
+    for (int skierID = from; skierID <= to; skierID++) committed.add(spool.append(ride(skierID)));
+    return committed;
+  }
+
+  private static LiftRide ride(int skierID) {
+    final LiftRide liftRide = new LiftRide().setPath(1, 2024, 1, skierID);
+    liftRide.setTime(skierID % 360);
+    liftRide.setLiftID(skierID % 40 + 1);
+    return liftRide.setRequestID(skierID, -skierID);
+  }
+
+  /** Rides as strings, so lists of them compare field by field. */
+  private static String describe(LiftRide liftRide) {
+    return String.format(
+        "%d/%d/%d/%d time=%d lift=%d id=%d,%d",
+        liftRide.getResortID(),
+        liftRide.getSeasonID(),
+        liftRide.getDayID(),
+        liftRide.getSkierID(),
+        liftRide.getTime(),
+        liftRide.getLiftID(),
+        liftRide.getRequestIDHigh(),
+        liftRide.getRequestIDLow());
+  }
+
+  private static List<String> expectedRides(int from, int to) {
+    final List<String> rides = new ArrayList<>();
+    for (int skierID = from; skierID <= to; skierID++) rides.add(describe(ride(skierID)));
+    return sorted(rides);
+  }
+
+  private static List<String> sorted(List<String> rides) {
+    synchronized (rides) {
+      final List<String> copy = new ArrayList<>(rides);
+      Collections.sort(copy);
+      return copy;
+    }
+  }
+
+  private long segmentFiles() throws IOException {
+    try (Stream<Path> files = Files.list(dir)) {
+      return files.filter(p -> p.getFileName().toString().endsWith(".seg")).count();
+    }
+  }
+
+  private static void await(BooleanSupplier condition) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() > deadline) throw new AssertionError("Timed out");
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+  }
+
+  /** A broker in memory: decodes what it is sent, and can be down or fail a number of publishes. */
+  private static class StandInBroker implements LiftRideSpool.Broker {
+    final List<String> rides = Collections.synchronizedList(new ArrayList<>());
+    final AtomicInteger failures = new AtomicInteger();
+    volatile boolean available;
+
+    @Override
+    public boolean isAvailable() {
+      return available;
+    }
+
+    @Override
+    public String queueFor(int skierID) {
+      return "queue-" + skierID % 2;
+    }
+
+    @Override
+    public boolean publish(Map<String, byte[]> batchByQueue) {
+      if (failures.getAndUpdate(n -> Math.max(0, n - 1)) > 0) return false;
+      final LiftRide liftRide = new LiftRide();
+      for (byte[] batch : batchByQueue.values()) {
+        LiftRideMessageReader.forEach(BATCH_PROPS, batch, liftRide, r -> rides.add(describe(r)));
+      }
+      return true;
+    }
+  }
+}
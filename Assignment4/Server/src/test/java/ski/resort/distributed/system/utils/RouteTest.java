@@ -0,0 +1,92 @@
+package ski.resort.distributed.system.utils;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RouteTest {
+
+  // the resort GET's route, /{resortID}/seasons/{seasonID}/day/{dayID}/skiers
+  private static final Route ROUTE =
+      Route.builder()
+          .param(1, 10)
+          .literal("seasons")
+          .param()
+          .literal("day")
+          .param(1, 366)
+          .literal("skiers")
+          .build();
+
+  private final RouteMatch match = new RouteMatch();
+
+  @Test
+  void capturesParametersInOrder() {
+    assertEquals(Route.Result.MATCH, ROUTE.match("/3/seasons/2024/day/366/skiers", match));
+    assertEquals(3, match.get(0));
+    assertEquals(2024, match.get(1));
+    assertEquals(366, match.get(2));
+    assertThrows(IndexOutOfBoundsException.class, () -> match.get(3));
+  }
+
+  @Test
+  void ignoresOneTrailingSlash() {
+    assertEquals(Route.Result.MATCH, ROUTE.match("/3/seasons/2024/day/1/skiers/", match));
+    assertEquals(Route.Result.NO_MATCH, ROUTE.match("/3/seasons/2024/day/1/skiers//", match));
+  }
+
+  @Test
+  void matchesARangeOfTheString() {
+    final String uri = "/skiers/3/seasons/2024/day/7/skiers?limit=1";
+    final int from = "/skiers".length();
+    assertEquals(Route.Result.MATCH, ROUTE.match(uri, from, uri.indexOf('?'), match));
+    assertEquals(7, match.get(2));
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "/0/seasons/2024/day/1/skiers",
+        "/11/seasons/2024/day/1/skiers",
+        "/3/seasons/2024/day/367/skiers"
+      })
+  void reportsParametersOutOfRange(String path) {
+    assertEquals(Route.Result.OUT_OF_RANGE, ROUTE.match(path, match));
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "/x/seasons/2024/day/1/skiers",
+        "/3/seasons/-1/day/1/skiers",
+        "/3/seasons/2147483648/day/1/skiers",
+        "/3/seasons//day/1/skiers",
+        "/11/seasons/2024/day/1.0/skiers" // a bad number outranks an out-of-range one
+      })
+  void reportsBadNumbers(String path) {
+    assertEquals(Route.Result.BAD_NUMBER, ROUTE.match(path, match));
+  }
+
+  @ParameterizedTest
+  @ValueSource(
+      strings = {
+        "",
+        "/",
+        "3/seasons/2024/day/1/skiers",
+        "/3/seasons/2024/day/1",
+        "/3/seasons/2024/day/1/skiers/extra",
+        "/3/season/2024/day/1/skiers",
+        "/3/seasons/2024/days/1/skiers",
+        "/3/seasons/2024/day/1/skier"
+      })
+  void rejectsOtherShapes(String path) {
+    assertEquals(Route.Result.NO_MATCH, ROUTE.match(path, match));
+  }
+
+  @Test
+  void rejectsANullPath() {
+    assertEquals(Route.Result.NO_MATCH, ROUTE.match(null, match));
+  }
+}